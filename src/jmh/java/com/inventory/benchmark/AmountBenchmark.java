@@ -0,0 +1,62 @@
+package jmh.java.com.inventory.benchmark;
+
+// package com.inventory.benchmark;
+
+import com.inventory.util.Money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AmountBenchmark - Amount handling of a single field or line at the till
+ * Features:
+ * - Parsing of typed amounts into minor units, and as BigDecimal for comparison
+ * - Line total of addInvoiceItem (price times quantity)
+ *
+ * Independent of the invoice size, so it has no parameters and runs once.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmountBenchmark {
+    
+    private final String[] typedAmounts = {"0", "1", "12", "125", "125.5", "125.50", "1250.75"};
+    private final BigDecimal sellingPrice = new BigDecimal("149.99");
+    
+    private int keystroke;
+    private int quantity;
+    
+    private String nextTypedAmount() {
+        keystroke = (keystroke + 1) % typedAmounts.length;
+        return typedAmounts[keystroke];
+    }
+    
+    @Benchmark
+    public long parseAmount() {
+        return Money.parse(nextTypedAmount(), 0);
+    }
+    
+    @Benchmark
+    public BigDecimal parseAmountBigDecimal() {
+        return new BigDecimal(nextTypedAmount());
+    }
+    
+    @Benchmark
+    public long lineTotal() {
+        quantity = (quantity + 1) & 15;
+        return Money.times(Money.ofDecimal(sellingPrice), 1 + quantity);
+    }
+}
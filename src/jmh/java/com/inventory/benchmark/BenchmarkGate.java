@@ -0,0 +1,119 @@
+package jmh.java.com.inventory.benchmark;
+
+// package com.inventory.benchmark;
+
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BenchmarkGate - Runs the benchmarks and fails on regressions
+ *
+ * Usage: BenchmarkGate [--record] [baseline file] [tolerance]
+ * - --record      store the current scores as the new baseline
+ * - baseline file defaults to benchmark-baseline.properties
+ * - tolerance     allowed slowdown, default 0.20 (20%)
+ *
+ * Exits with status 1 if any benchmark is slower than its baseline
+ * by more than the tolerance.
+ */
+public class BenchmarkGate {
+    
+    private static final String DEFAULT_BASELINE = "benchmark-baseline.properties";
+    private static final double DEFAULT_TOLERANCE = 0.20;
+    
+    public static void main(String[] args) throws RunnerException, IOException {
+        boolean record = false;
+        List<String> rest = new ArrayList<>();
+        for (String arg : args) {
+            if ("--record".equals(arg)) {
+                record = true;
+            } else {
+                rest.add(arg);
+            }
+        }
+        Path baselineFile = Paths.get(rest.size() > 0 ? rest.get(0) : DEFAULT_BASELINE);
+        double tolerance = rest.size() > 1 ? Double.parseDouble(rest.get(1)) : DEFAULT_TOLERANCE;
+        
+        Options options = new OptionsBuilder()
+            .include(SalesCalculationBenchmark.class.getSimpleName())
+            .include(AmountBenchmark.class.getSimpleName())
+            .timeUnit(TimeUnit.NANOSECONDS)
+            .build();
+        Map<String, Double> scores = scores(new Runner(options).run());
+        
+        if (record) {
+            Properties baseline = new Properties();
+            for (Map.Entry<String, Double> entry : scores.entrySet()) {
+                baseline.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+            try (OutputStream out = Files.newOutputStream(baselineFile)) {
+                baseline.store(out, "Benchmark baseline, average time in ns/op");
+            }
+            System.out.println("Baseline written to " + baselineFile.toAbsolutePath());
+            return;
+        }
+        
+        if (!Files.exists(baselineFile)) {
+            System.err.println("No baseline at " + baselineFile.toAbsolutePath() + ", run with --record first");
+            System.exit(2);
+        }
+        Properties baseline = new Properties();
+        try (InputStream in = Files.newInputStream(baselineFile)) {
+            baseline.load(in);
+        }
+        
+        int regressions = 0;
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            String expected = baseline.getProperty(entry.getKey());
+            if (expected == null) {
+                System.out.printf("NEW   %-70s %12.1f ns/op%n", entry.getKey(), entry.getValue());
+                continue;
+            }
+            double limit = Double.parseDouble(expected) * (1 + tolerance);
+            boolean slower = entry.getValue() > limit;
+            if (slower) {
+                regressions++;
+            }
+            System.out.printf("%s %-70s %12.1f ns/op (baseline %s)%n",
+                slower ? "SLOW " : "OK   ", entry.getKey(), entry.getValue(), expected);
+        }
+        
+        if (regressions > 0) {
+            System.err.println(regressions + " benchmark(s) regressed by more than "
+                + Math.round(tolerance * 100) + "%");
+            System.exit(1);
+        }
+    }
+    
+    /**
+     * Score per benchmark, keyed by method name and parameters
+     */
+    private static Map<String, Double> scores(Collection<RunResult> results) {
+        Map<String, Double> scores = new TreeMap<>();
+        for (RunResult result : results) {
+            StringBuilder key = new StringBuilder(result.getParams().getBenchmark());
+            for (String param : result.getParams().getParamsKeys()) {
+                key.append(':').append(param).append('=').append(result.getParams().getParam(param));
+            }
+            scores.put(key.toString(), result.getPrimaryResult().getScore());
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,179 @@
+package jmh.java.com.inventory.benchmark;
+
+// package com.inventory.benchmark;
+
+import com.inventory.model.Customer;
+import com.inventory.model.Invoice;
+import com.inventory.model.InvoiceItem;
+import com.inventory.model.Product;
+import com.inventory.service.InvoiceTotals;
+import com.inventory.util.Money;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SalesCalculationBenchmark - Code that runs on every keystroke at the till
+ * Features:
+ * - Totals update for each calculation field, in % and fixed mode
+ * - Full recomputation as calculateTotals() used to do it, for comparison
+ * - Invoice assembly of processPaymentAndPrint
+ * - Invoices of 1, 50 and 500 lines
+ *
+ * Amount parsing and line totals do not depend on the invoice and are
+ * measured in AmountBenchmark. Run with BenchmarkGate to compare against
+ * a recorded baseline.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SalesCalculationBenchmark {
+    
+    @Param({"1", "50", "500"})
+    public int lines;
+    
+    @Param({"PERCENT", "FIXED"})
+    public String mode;
+    
+    private final String[] typedAmounts = {"0", "1", "12", "125", "125.5", "125.50", "1250.75"};
+    
+    private List<InvoiceItem> items;
+    private long[] lineTotals;
+    private BigDecimal[] decimalLineTotals;
+    private Product product;
+    private Customer customer;
+    private InvoiceTotals totals;
+    private boolean percent;
+    private int keystroke;
+    private int line;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        percent = "PERCENT".equals(mode);
+        Random random = new Random(42);
+        
+        customer = new Customer();
+        customer.setId("C1");
+        customer.setName("Walk-in Customer");
+        
+        product = new Product();
+        product.setId("P1");
+        product.setName("Benchmark Product");
+        product.setSellingPrice(new BigDecimal("149.99"));
+        
+        items = new ArrayList<>(lines);
+        lineTotals = new long[lines];
+        decimalLineTotals = new BigDecimal[lines];
+        totals = new InvoiceTotals();
+        for (int i = 0; i < lines; i++) {
+            long price = 100 + random.nextInt(100_000);
+            int quantity = 1 + random.nextInt(20);
+            long lineTotal = Money.times(price, quantity);
+            
+            InvoiceItem item = new InvoiceItem();
+            item.setProduct(product);
+            item.setQuantity(quantity);
+            item.setUnitPrice(Money.toDecimal(price));
+            item.setTotalPrice(Money.toDecimal(lineTotal));
+            items.add(item);
+            
+            lineTotals[i] = lineTotal;
+            decimalLineTotals[i] = item.getTotalPrice();
+            totals.addLine(lineTotal);
+        }
+        totals.setShippingCost(Money.parse("25"));
+        totals.setTax(Money.parse("7.5"), percent);
+        totals.setDiscount(Money.parse("5"), percent);
+    }
+    
+    private String nextTypedAmount() {
+        keystroke = (keystroke + 1) % typedAmounts.length;
+        return typedAmounts[keystroke];
+    }
+    
+    @Benchmark
+    public long keystrokePaidAmount() {
+        totals.setPaidAmount(Money.parse(nextTypedAmount(), 0));
+        return totals.getDueAmount();
+    }
+    
+    @Benchmark
+    public long keystrokeTax() {
+        totals.setTax(Money.parse(nextTypedAmount(), 0), percent);
+        return totals.getDueAmount();
+    }
+    
+    @Benchmark
+    public long keystrokeDiscount() {
+        totals.setDiscount(Money.parse(nextTypedAmount(), 0), percent);
+        return totals.getDueAmount();
+    }
+    
+    @Benchmark
+    public long addAndRemoveLine() {
+        line = (line + 1) % lines;
+        long lineTotal = lineTotals[line];
+        totals.addLine(lineTotal);
+        totals.removeLine(lineTotal);
+        return totals.getDueAmount();
+    }
+    
+    /**
+     * What calculateTotals() did on every keystroke before the totals became incremental
+     */
+    @Benchmark
+    public BigDecimal fullRecompute() {
+        BigDecimal hundred = new BigDecimal(100);
+        BigDecimal subTotal = BigDecimal.ZERO;
+        for (BigDecimal lineTotal : decimalLineTotals) {
+            subTotal = subTotal.add(lineTotal);
+        }
+        BigDecimal shippingCost = new BigDecimal("25");
+        BigDecimal taxInput = new BigDecimal("7.5");
+        BigDecimal discountInput = new BigDecimal("5");
+        BigDecimal taxValue = percent
+            ? subTotal.multiply(taxInput).divide(hundred, 2, RoundingMode.HALF_UP) : taxInput;
+        BigDecimal discountValue = percent
+            ? subTotal.multiply(discountInput).divide(hundred, 2, RoundingMode.HALF_UP) : discountInput;
+        BigDecimal grandTotal = subTotal.add(shippingCost).add(taxValue).subtract(discountValue);
+        return grandTotal.subtract(new BigDecimal(nextTypedAmount()));
+    }
+    
+    @Benchmark
+    public Invoice assembleInvoice() {
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceNo("INV-000001");
+        invoice.setCustomer(customer);
+        invoice.setInvoiceDate(LocalDate.now());
+        invoice.setItems(new ArrayList<>(items));
+        invoice.setTotalAmount(Money.toDecimal(totals.getGrandTotal()));
+        invoice.setPaidAmount(Money.toDecimal(totals.getPaidAmount()));
+        invoice.setDueAmount(Money.toDecimal(totals.getDueAmount()));
+        invoice.setShippingCost(Money.toDecimal(totals.getShippingCost()));
+        invoice.setTaxAmount(Money.toDecimal(totals.getTaxAmount()));
+        invoice.setDiscountAmount(Money.toDecimal(totals.getDiscountAmount()));
+        invoice.setPaymentType("Cash");
+        return invoice;
+    }
+}
@@ -0,0 +1,392 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.controller.SalesController;
+import com.inventory.model.Customer;
+import com.inventory.model.Invoice;
+import com.inventory.service.InvoiceCommitPipeline.CommitStatus;
+import com.inventory.util.Money;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CustomerArrearsLedger - Running arrears balance per customer
+ * Features:
+ * - O(1) reads once a customer's balance is known
+ * - Balance seeded once from the invoice history (or from an already
+ *   loaded customer row), then moved by the invoices this terminal commits;
+ *   they are posted automatically from the commit pipeline
+ * - getCheckedArrears() first asks the database for the customer's arrears
+ *   stamp, which changes with every invoice, payment or return on any
+ *   terminal; the history is only read again if it moved
+ * - Listeners hear the new balance whenever it moves
+ * - Background job periodically checks every balance the same way
+ * - A history read is only kept if none of the customer's invoices was
+ *   being saved meanwhile, since the read may or may not contain it; it is
+ *   tried a few times before giving up
+ *
+ * Amounts are in minor units (see Money).
+ */
+public class CustomerArrearsLedger {
+    
+    /**
+     * Authoritative arrears computed from the invoice history (slow)
+     */
+    public interface ArrearsSource {
+        BigDecimal getCustomerArrears(String customerId);
+        
+        /**
+         * Cheap, indexed read of a value that changes whenever the customer's
+         * arrears may have changed, e.g. the newest invoice, payment or return.
+         * Null if unknown; the history is then read on every check.
+         */
+        default String getArrearsStamp(String customerId) {
+            return null;
+        }
+    }
+    
+    public interface ArrearsListener {
+        /**
+         * Called on the thread that posted, with the balance after posting
+         */
+        void arrearsChanged(String customerId, long arrears);
+    }
+    
+    private static final long RECONCILE_INTERVAL_MINUTES = 15;
+    
+    // History reads tried while invoices of the customer keep being saved
+    private static final int MAX_READ_ATTEMPTS = 3;
+    
+    private static volatile CustomerArrearsLedger instance;
+    
+    /**
+     * Immutable balance; every posting installs a new instance, so
+     * reconciliation can tell whether it moved while reading the history
+     */
+    private static final class Balance {
+        private final long amount;
+        // Arrears stamp the amount was read at; null if not read from the history
+        private final String stamp;
+        
+        Balance(long amount, String stamp) {
+            this.amount = amount;
+            this.stamp = stamp;
+        }
+    }
+    
+    /**
+     * Invoices of a customer being saved, and when a save last started or ended
+     */
+    private static final class Saves {
+        private final Set<String> running = new HashSet<>();
+        private long lastEvent;
+    }
+    
+    private final ArrearsSource source;
+    private final Map<String, Balance> balances = new ConcurrentHashMap<>();
+    private final List<ArrearsListener> listeners = new CopyOnWriteArrayList<>();
+    
+    // Guarded by itself, as are installing history reads and posting invoices
+    private final Map<String, Saves> saves = new HashMap<>();
+    private long saveEvents;
+    
+    private ScheduledExecutorService reconciler;
+    
+    public CustomerArrearsLedger(ArrearsSource source) {
+        this.source = source;
+    }
+    
+    public static CustomerArrearsLedger getInstance() {
+        CustomerArrearsLedger ledger = instance;
+        if (ledger == null) {
+            synchronized (CustomerArrearsLedger.class) {
+                ledger = instance;
+                if (ledger == null) {
+                    SalesController salesController = new SalesController();
+                    ledger = new CustomerArrearsLedger(new ArrearsSource() {
+                        @Override
+                        public BigDecimal getCustomerArrears(String customerId) {
+                            return salesController.getCustomerArrears(customerId);
+                        }
+                        
+                        @Override
+                        public String getArrearsStamp(String customerId) {
+                            return salesController.getCustomerArrearsStamp(customerId);
+                        }
+                    });
+                    InvoiceCommitPipeline.getInstance().addCommitListener(ledger::commitStatusChanged);
+                    ledger.startReconciliation(RECONCILE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+                    instance = ledger;
+                }
+            }
+        }
+        return ledger;
+    }
+    
+    public void addArrearsListener(ArrearsListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeArrearsListener(ArrearsListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Current arrears of a customer. Only the first call per customer
+     * reads the invoice history.
+     */
+    public long getArrears(String customerId) {
+        Balance balance = balances.get(customerId);
+        if (balance != null) {
+            return balance.amount;
+        }
+        return readHistory(customerId);
+    }
+    
+    /**
+     * Current arrears of a customer, also after invoices, payments or returns
+     * made on other terminals or screens, e.g. before a credit decision at
+     * the till. Costs one stamp query; the history is read only if the
+     * balance moved. Not for the event dispatch thread.
+     */
+    public long getCheckedArrears(String customerId) {
+        Balance balance = balances.get(customerId);
+        if (balance != null && balance.stamp != null
+                && balance.stamp.equals(source.getArrearsStamp(customerId))) {
+            return balance.amount;
+        }
+        return readHistory(customerId);
+    }
+    
+    /**
+     * Arrears of many customers at once, e.g. for a report. Unknown balances
+     * are seeded from the loaded rows in one step, as prime() does; only
+     * customers with an invoice saved this session are read from the history.
+     *
+     * @return arrears in minor units, in the order of the customers
+     */
+    public long[] getArrears(List<Customer> customers) {
+        long[] arrears = new long[customers.size()];
+        List<Integer> unknown = new ArrayList<>();
+        synchronized (saves) {
+            for (int i = 0; i < arrears.length; i++) {
+                Customer customer = customers.get(i);
+                String customerId = customer.getId();
+                if (customerId == null) {
+                    arrears[i] = Money.ofDecimal(customer.getArrears());
+                    continue;
+                }
+                Balance balance = balances.get(customerId);
+                if (balance == null && !saves.containsKey(customerId)) {
+                    balance = new Balance(Money.ofDecimal(customer.getArrears()), null);
+                    balances.put(customerId, balance);
+                }
+                if (balance != null) {
+                    arrears[i] = balance.amount;
+                } else {
+                    unknown.add(i);
+                }
+            }
+        }
+        for (int i : unknown) {
+            arrears[i] = getArrears(customers.get(i).getId());
+        }
+        return arrears;
+    }
+    
+    /**
+     * Balance of a customer if it is already known; never reads the invoice
+     * history, so it is safe on the EDT
+     *
+     * @return null if the balance is not known yet
+     */
+    public Long findArrears(String customerId) {
+        Balance balance = balances.get(customerId);
+        return balance != null ? balance.amount : null;
+    }
+    
+    /**
+     * Seed a balance from a customer row that was loaded anyway.
+     * An existing balance is kept. Ignored once an invoice of the customer
+     * was saved in this session, as the row may or may not contain it.
+     */
+    public void prime(String customerId, BigDecimal arrears) {
+        if (customerId == null) {
+            return;
+        }
+        synchronized (saves) {
+            if (!saves.containsKey(customerId)) {
+                balances.putIfAbsent(customerId, new Balance(Money.ofDecimal(arrears), null));
+            }
+        }
+    }
+    
+    /**
+     * Forget a balance, e.g. after the customer was deleted or edited by hand
+     */
+    public void invalidate(String customerId) {
+        balances.remove(customerId);
+    }
+    
+    /**
+     * Check all known balances as getCheckedArrears() does and correct them
+     *
+     * @return number of balances that were out of date
+     */
+    public int reconcile() {
+        int corrected = 0;
+        for (Map.Entry<String, Balance> entry : balances.entrySet()) {
+            try {
+                if (getCheckedArrears(entry.getKey()) != entry.getValue().amount) {
+                    corrected++;
+                }
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+        return corrected;
+    }
+    
+    public synchronized void startReconciliation(long interval, TimeUnit unit) {
+        if (reconciler != null) {
+            return;
+        }
+        reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "arrears-reconcile");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reconciler.scheduleWithFixedDelay(() -> {
+            try {
+                reconcile();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }, interval, interval, unit);
+    }
+    
+    public synchronized void shutdown() {
+        if (reconciler != null) {
+            reconciler.shutdown();
+            reconciler = null;
+        }
+    }
+    
+    private void post(String customerId, long delta) {
+        if (customerId == null || delta == 0) {
+            return;
+        }
+        // Unknown customers are seeded from the history on first read; the
+        // stamp has moved with this invoice, so the next check reads it again
+        balances.computeIfPresent(customerId,
+            (id, balance) -> new Balance(balance.amount + delta, null));
+    }
+    
+    /**
+     * Read a balance from the history and keep it, unless an invoice of the
+     * customer was saved meanwhile; then it is read again a few times
+     */
+    private long readHistory(String customerId) {
+        for (int attempt = 1; ; attempt++) {
+            long started = startRead(customerId);
+            // Before the history: a change in between only makes the next check read again
+            String stamp = source.getArrearsStamp(customerId);
+            long amount = readSource(customerId);
+            Balance before;
+            synchronized (saves) {
+                if (!unchangedSince(customerId, started)) {
+                    if (attempt < MAX_READ_ATTEMPTS) {
+                        continue;
+                    }
+                    // Not kept; read again next time, when the save is over
+                    return amount;
+                }
+                before = balances.put(customerId, new Balance(amount, stamp));
+            }
+            if (before != null && before.amount != amount) {
+                for (ArrearsListener listener : listeners) {
+                    listener.arrearsChanged(customerId, amount);
+                }
+            }
+            return amount;
+        }
+    }
+    
+    /**
+     * Tell listeners the balance after a posting; call without holding saves,
+     * as an unknown balance is read from the history here
+     */
+    private void fireArrearsChanged(String customerId, long delta) {
+        if (customerId == null || delta == 0 || listeners.isEmpty()) {
+            return;
+        }
+        long arrears = getArrears(customerId);
+        for (ArrearsListener listener : listeners) {
+            listener.arrearsChanged(customerId, arrears);
+        }
+    }
+    
+    /**
+     * Mark the start of a history read
+     *
+     * @return -1 if an invoice of the customer is being saved right now
+     */
+    private long startRead(String customerId) {
+        synchronized (saves) {
+            Saves customerSaves = saves.get(customerId);
+            return customerSaves != null && !customerSaves.running.isEmpty() ? -1 : saveEvents;
+        }
+    }
+    
+    /**
+     * True if no invoice of the customer was saved since startRead; call holding saves
+     */
+    private boolean unchangedSince(String customerId, long started) {
+        if (started < 0) {
+            return false;
+        }
+        Saves customerSaves = saves.get(customerId);
+        return customerSaves == null || customerSaves.lastEvent <= started;
+    }
+    
+    private long readSource(String customerId) {
+        return Money.ofDecimal(source.getCustomerArrears(customerId));
+    }
+    
+    private void commitStatusChanged(Invoice invoice, CommitStatus status, String message) {
+        if (invoice.getCustomer() == null || invoice.getCustomer().getId() == null
+                || status == CommitStatus.JOURNALED) {
+            return;
+        }
+        String customerId = invoice.getCustomer().getId();
+        long due;
+        synchronized (saves) {
+            Saves customerSaves = saves.computeIfAbsent(customerId, id -> new Saves());
+            customerSaves.lastEvent = ++saveEvents;
+            if (status == CommitStatus.COMMITTING) {
+                customerSaves.running.add(invoice.getInvoiceNo());
+                return;
+            }
+            customerSaves.running.remove(invoice.getInvoiceNo());
+            if (status != CommitStatus.COMMITTED) {
+                return;
+            }
+            due = Money.ofDecimal(invoice.getDueAmount());
+            post(customerId, due);
+        }
+        // Paid in full: no balance moved, nothing to tell
+        fireArrearsChanged(customerId, due);
+    }
+}
@@ -0,0 +1,68 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CustomerIdPageSource - A fixed list of customer IDs (e.g. search hits),
+ * with the customers of each page read from the database by ID.
+ * Deleted customers are dropped from the list.
+ */
+public class CustomerIdPageSource implements CustomerPageSource {
+    
+    private final CustomerService customerService;
+    
+    // Replaced, never modified, so pages can be read while a customer is removed
+    private volatile List<String> customerIds;
+    
+    public CustomerIdPageSource(CustomerService customerService, List<String> customerIds) {
+        this.customerService = customerService;
+        this.customerIds = customerIds;
+    }
+    
+    @Override
+    public int getCustomerCount() {
+        return customerIds.size();
+    }
+    
+    @Override
+    public List<Customer> getCustomers(int offset, int limit) {
+        List<String> ids = customerIds;
+        int end = Math.min(offset + limit, ids.size());
+        if (offset >= end) {
+            return Collections.emptyList();
+        }
+        List<String> pageIds = ids.subList(offset, end);
+        
+        // The database returns them in any order; the page keeps the order of the list
+        Map<String, Customer> byId = new HashMap<>();
+        for (Customer customer : customerService.getCustomersByIds(pageIds)) {
+            byId.put(customer.getId(), customer);
+        }
+        List<Customer> page = new ArrayList<>(pageIds.size());
+        for (String id : pageIds) {
+            Customer customer = byId.get(id);
+            if (customer != null) {
+                page.add(customer);
+            }
+        }
+        return page;
+    }
+    
+    @Override
+    public synchronized void removeCustomer(String customerId) {
+        int index = customerIds.indexOf(customerId);
+        if (index >= 0) {
+            List<String> ids = new ArrayList<>(customerIds);
+            ids.remove(index);
+            customerIds = ids;
+        }
+    }
+}
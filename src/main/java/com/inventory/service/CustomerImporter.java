@@ -0,0 +1,492 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+import com.inventory.util.CsvReader;
+import com.inventory.util.ValidationUtil;
+import com.inventory.util.XlsxRowReader;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLDataException;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+/**
+ * CustomerImporter - Bulk import of customers from CSV or Excel (.xlsx) files
+ * Features:
+ * - The file is read once, in chunks; chunks are split into fields and
+ *   validated in parallel on a fork-join pool while the next chunk is read
+ * - Columns are found by their header names, in any order
+ * - Names already in use (CustomerNameIndex) or repeated in the file are rejected
+ * - Valid rows are saved in batches, one database transaction per batch;
+ *   a batch turned down for its data is split to find the rows at fault,
+ *   any other database failure (e.g. a lost connection) stops the import
+ * - Every rejected row is reported with its row number and the reason
+ *
+ * Saved customers are announced through CustomerRepository, so open
+ * screens and the search indexes pick them up.
+ */
+public class CustomerImporter {
+    
+    /**
+     * Saves a batch of new customers in one transaction and sets their IDs.
+     * Returns which customers were saved; throwing means none were.
+     * Rows at fault are reported as an SQLException with a data or
+     * integrity SQL state, or one caused by it.
+     */
+    public interface CustomerStore {
+        boolean[] saveAll(List<Customer> customers) throws Exception;
+    }
+    
+    /**
+     * A rejected row
+     */
+    public static final class RowError {
+        private final int row;
+        private final String message;
+        
+        RowError(int row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+        
+        public int getRow() {
+            return row;
+        }
+        
+        public String getMessage() {
+            return message;
+        }
+    }
+    
+    public static final class ImportResult {
+        private final int rowCount;
+        private final int importedCount;
+        private final List<RowError> errors;
+        
+        ImportResult(int rowCount, int importedCount, List<RowError> errors) {
+            this.rowCount = rowCount;
+            this.importedCount = importedCount;
+            this.errors = Collections.unmodifiableList(errors);
+        }
+        
+        /**
+         * Data rows read, not counting the header
+         */
+        public int getRowCount() {
+            return rowCount;
+        }
+        
+        public int getImportedCount() {
+            return importedCount;
+        }
+        
+        public List<RowError> getErrors() {
+            return errors;
+        }
+    }
+    
+    private static final int CHUNK_SIZE = 1000;
+    private static final int SPLIT_THRESHOLD = 250;
+    private static final long NAME_INDEX_WAIT_SECONDS = 60;
+    
+    // Header names (lower case) of each field
+    private static final String[][] COLUMN_NAMES = {
+        {"name", "customer name", "customer"},
+        {"office", "office no", "office/office no", "office number"},
+        {"contact person", "customer contact person"},
+        {"billing address", "address"},
+        {"shipping address"},
+        {"city"},
+        {"bank", "bank name"},
+        {"account no", "account number"},
+        {"email", "person email", "e-mail"},
+        {"phone", "person phone", "telephone"},
+        {"mobile", "mobile number", "mobile no"},
+        {"private note", "note"},
+        {"online", "online info"},
+        {"other info", "other"},
+        {"private"}
+    };
+    
+    private static final Map<String, Integer> FIELD_BY_TITLE = new HashMap<>();
+    static {
+        for (int field = 0; field < COLUMN_NAMES.length; field++) {
+            for (String title : COLUMN_NAMES[field]) {
+                FIELD_BY_TITLE.put(title, field);
+            }
+        }
+    }
+    
+    private static final int NAME = 0;
+    private static final int OFFICE = 1;
+    private static final int CONTACT_PERSON = 2;
+    private static final int BILLING_ADDRESS = 3;
+    private static final int SHIPPING_ADDRESS = 4;
+    private static final int CITY = 5;
+    private static final int BANK = 6;
+    private static final int ACCOUNT_NUMBER = 7;
+    private static final int EMAIL = 8;
+    private static final int PHONE = 9;
+    private static final int MOBILE = 10;
+    private static final int PRIVATE_NOTE = 11;
+    private static final int ONLINE = 12;
+    private static final int OTHER_INFO = 13;
+    private static final int PRIVATE = 14;
+    
+    /**
+     * One row as read from the file; CSV rows are split into cells later, in parallel
+     */
+    private static final class SourceRow {
+        final int number;
+        final String record;
+        final String[] cells;
+        
+        SourceRow(int number, String record, String[] cells) {
+            this.number = number;
+            this.record = record;
+            this.cells = cells;
+        }
+        
+        String[] cells() {
+            return cells != null ? cells : CsvReader.parseRecord(record);
+        }
+    }
+    
+    private interface RowReader extends AutoCloseable {
+        SourceRow next() throws IOException;
+        
+        @Override
+        void close() throws IOException;
+    }
+    
+    /**
+     * A row after validation: either a customer or an error
+     */
+    private static final class CheckedRow {
+        final int number;
+        final Customer customer;
+        final String error;
+        
+        CheckedRow(int number, Customer customer, String error) {
+            this.number = number;
+            this.customer = customer;
+            this.error = error;
+        }
+    }
+    
+    private final CustomerStore store;
+    private final CustomerNameIndex nameIndex;
+    private final CustomerRepository repository;
+    private final ForkJoinPool pool;
+    
+    public CustomerImporter(CustomerStore store, CustomerNameIndex nameIndex, CustomerRepository repository) {
+        this.store = store;
+        this.nameIndex = nameIndex;
+        this.repository = repository;
+        this.pool = ForkJoinPool.commonPool();
+    }
+    
+    /**
+     * Importer writing through CustomerService
+     */
+    public static CustomerImporter create() {
+        CustomerService customerService = new CustomerService();
+        return new CustomerImporter(customerService::addCustomers,
+            CustomerNameIndex.getInstance(), CustomerRepository.getInstance());
+    }
+    
+    /**
+     * Import a .csv or .xlsx file. Stops early when the calling thread is
+     * interrupted; batches saved until then stay saved.
+     *
+     * @param progress receives the number of rows handled so far
+     */
+    public ImportResult importFile(Path file, IntConsumer progress) throws IOException, InterruptedException {
+        nameIndex.buildInBackground();
+        if (!nameIndex.awaitReady(NAME_INDEX_WAIT_SECONDS, TimeUnit.SECONDS)) {
+            throw new IOException("Customer names could not be loaded; nothing was imported");
+        }
+        
+        try (RowReader reader = open(file)) {
+            SourceRow header = reader.next();
+            if (header == null) {
+                throw new IOException("The file is empty");
+            }
+            int[] columns = mapColumns(header.cells());
+            if (columns[NAME] < 0) {
+                throw new IOException("The file has no \"Name\" column");
+            }
+            return run(reader, columns, progress);
+        }
+    }
+    
+    private ImportResult run(RowReader reader, int[] columns, IntConsumer progress)
+            throws IOException, InterruptedException {
+        List<RowError> errors = new ArrayList<>();
+        Map<String, Integer> namesInFile = new HashMap<>();
+        int rowCount = 0;
+        int handled = 0;
+        int imported = 0;
+        
+        // Chunks being validated, oldest first; a few are kept in flight to bound memory
+        Deque<ForkJoinTask<List<CheckedRow>>> inFlight = new ArrayDeque<>();
+        int maxInFlight = pool.getParallelism() + 1;
+        boolean endOfFile = false;
+        
+        while (!endOfFile || !inFlight.isEmpty()) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedException();
+            }
+            while (!endOfFile && inFlight.size() < maxInFlight) {
+                List<SourceRow> chunk = new ArrayList<>(CHUNK_SIZE);
+                SourceRow row;
+                while (chunk.size() < CHUNK_SIZE && (row = reader.next()) != null) {
+                    chunk.add(row);
+                }
+                endOfFile = chunk.size() < CHUNK_SIZE;
+                if (!chunk.isEmpty()) {
+                    rowCount += chunk.size();
+                    inFlight.add(pool.submit(new CheckTask(chunk, 0, chunk.size(), columns)));
+                }
+            }
+            if (inFlight.isEmpty()) {
+                break;
+            }
+            
+            List<CheckedRow> checked = inFlight.poll().join();
+            handled += checked.size();
+            List<CheckedRow> batch = new ArrayList<>(checked.size());
+            for (CheckedRow row : checked) {
+                if (row.error != null) {
+                    errors.add(new RowError(row.number, row.error));
+                    continue;
+                }
+                String key = CustomerNameIndex.key(row.customer.getName());
+                Integer firstRow = namesInFile.putIfAbsent(key, row.number);
+                if (firstRow != null) {
+                    errors.add(new RowError(row.number, "Same name as row " + firstRow));
+                } else if (!nameIndex.findIds(row.customer.getName()).isEmpty()) {
+                    errors.add(new RowError(row.number, "A customer with this name already exists"));
+                } else {
+                    batch.add(row);
+                }
+            }
+            try {
+                imported += save(batch, errors);
+            } catch (IOException ex) {
+                throw new IOException("Import stopped: " + ex.getMessage()
+                    + ". Customers saved before the failure were kept.", ex);
+            }
+            progress.accept(handled);
+        }
+        
+        errors.sort((a, b) -> Integer.compare(a.getRow(), b.getRow()));
+        return new ImportResult(rowCount, imported, errors);
+    }
+    
+    /**
+     * Save one batch; if the database turns down its data, save each half
+     * separately to narrow it down to the rows at fault
+     *
+     * @throws IOException if the batch failed for a reason no row is at
+     *                     fault for; every other batch would fail as well
+     */
+    private int save(List<CheckedRow> batch, List<RowError> errors) throws IOException {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        List<Customer> customers = new ArrayList<>(batch.size());
+        for (CheckedRow row : batch) {
+            customers.add(row.customer);
+        }
+        try {
+            return announceSaved(batch, store.saveAll(customers), errors);
+        } catch (Exception ex) {
+            if (!isRowError(ex)) {
+                throw new IOException(ex.getMessage(), ex);
+            }
+            if (batch.size() == 1) {
+                errors.add(new RowError(batch.get(0).number, "Not saved: " + ex.getMessage()));
+                return 0;
+            }
+        }
+        int middle = batch.size() / 2;
+        return save(batch.subList(0, middle), errors) + save(batch.subList(middle, batch.size()), errors);
+    }
+    
+    /**
+     * True if the database turned down the data of a row (bad value,
+     * duplicate key) rather than failing as a whole
+     */
+    private static boolean isRowError(Throwable ex) {
+        for (Throwable cause = ex; cause != null; cause = cause.getCause() != cause ? cause.getCause() : null) {
+            if (cause instanceof SQLDataException || cause instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+            if (cause instanceof SQLException) {
+                // SQL state class 22 is a data exception, 23 an integrity constraint violation
+                String state = ((SQLException) cause).getSQLState();
+                return state != null && (state.startsWith("22") || state.startsWith("23"));
+            }
+        }
+        return false;
+    }
+    
+    private int announceSaved(List<CheckedRow> batch, boolean[] saved, List<RowError> errors) {
+        List<Customer> added = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            CheckedRow row = batch.get(i);
+            if (saved[i]) {
+                added.add(row.customer);
+            } else {
+                errors.add(new RowError(row.number, "Not saved"));
+            }
+        }
+        // One change for the whole batch, so screens update once per chunk
+        repository.customersAdded(added);
+        return added.size();
+    }
+    
+    /**
+     * Splits a chunk in halves until the pieces are small, then validates them
+     */
+    private static final class CheckTask extends RecursiveTask<List<CheckedRow>> {
+        private final List<SourceRow> rows;
+        private final int from;
+        private final int to;
+        private final int[] columns;
+        
+        CheckTask(List<SourceRow> rows, int from, int to, int[] columns) {
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+            this.columns = columns;
+        }
+        
+        @Override
+        protected List<CheckedRow> compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                CheckTask left = new CheckTask(rows, from, middle, columns);
+                left.fork();
+                List<CheckedRow> right = new CheckTask(rows, middle, to, columns).compute();
+                List<CheckedRow> result = left.join();
+                result.addAll(right);
+                return result;
+            }
+            List<CheckedRow> result = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                result.add(check(rows.get(i), columns));
+            }
+            return result;
+        }
+    }
+    
+    private static CheckedRow check(SourceRow row, int[] columns) {
+        String[] cells = row.cells();
+        Customer customer = new Customer();
+        customer.setName(cell(cells, columns[NAME]));
+        customer.setOfficeNumber(cell(cells, columns[OFFICE]));
+        customer.setContactPerson(cell(cells, columns[CONTACT_PERSON]));
+        customer.setBillingAddress(cell(cells, columns[BILLING_ADDRESS]));
+        customer.setShippingAddress(cell(cells, columns[SHIPPING_ADDRESS]));
+        customer.setCity(cell(cells, columns[CITY]));
+        customer.setBankName(cell(cells, columns[BANK]));
+        customer.setAccountNumber(cell(cells, columns[ACCOUNT_NUMBER]));
+        customer.setEmail(cell(cells, columns[EMAIL]));
+        customer.setPhone(cell(cells, columns[PHONE]));
+        customer.setMobileNumber(cell(cells, columns[MOBILE]));
+        customer.setPrivateNote(cell(cells, columns[PRIVATE_NOTE]));
+        customer.setOnlineInfo(cell(cells, columns[ONLINE]));
+        customer.setOtherInfo(cell(cells, columns[OTHER_INFO]));
+        String privateFlag = cell(cells, columns[PRIVATE]).toLowerCase(Locale.ROOT);
+        customer.setPrivate(privateFlag.equals("yes") || privateFlag.equals("true") || privateFlag.equals("1"));
+        
+        String error = null;
+        if (customer.getName().isEmpty()) {
+            error = "Name is required";
+        } else if (!customer.getEmail().isEmpty() && !ValidationUtil.isValidEmail(customer.getEmail())) {
+            error = "Invalid email: " + customer.getEmail();
+        } else if (!customer.getPhone().isEmpty() && !ValidationUtil.isValidPhone(customer.getPhone())) {
+            error = "Invalid phone: " + customer.getPhone();
+        } else if (!customer.getMobileNumber().isEmpty() && !ValidationUtil.isValidPhone(customer.getMobileNumber())) {
+            error = "Invalid mobile number: " + customer.getMobileNumber();
+        }
+        return error != null ? new CheckedRow(row.number, null, error) : new CheckedRow(row.number, customer, null);
+    }
+    
+    private static String cell(String[] cells, int column) {
+        return column >= 0 && column < cells.length ? cells[column].trim() : "";
+    }
+    
+    /**
+     * Column of each field in the file, or -1 if it has none
+     */
+    private static int[] mapColumns(String[] header) {
+        int[] columns = new int[COLUMN_NAMES.length];
+        Arrays.fill(columns, -1);
+        for (int column = 0; column < header.length; column++) {
+            Integer field = FIELD_BY_TITLE.get(header[column].trim().toLowerCase(Locale.ROOT));
+            if (field != null && columns[field] < 0) {
+                columns[field] = column;
+            }
+        }
+        return columns;
+    }
+    
+    private static RowReader open(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xlsx")) {
+            XlsxRowReader xlsx = new XlsxRowReader(file);
+            return new RowReader() {
+                @Override
+                public SourceRow next() throws IOException {
+                    String[] cells = xlsx.nextRow();
+                    return cells != null ? new SourceRow(xlsx.getRowNumber(), null, cells) : null;
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    xlsx.close();
+                }
+            };
+        }
+        if (name.endsWith(".csv")) {
+            CsvReader csv = new CsvReader(Files.newBufferedReader(file, StandardCharsets.UTF_8));
+            return new RowReader() {
+                private int rowNumber;
+                
+                @Override
+                public SourceRow next() throws IOException {
+                    String record = csv.nextRecord();
+                    return record != null ? new SourceRow(++rowNumber, record, null) : null;
+                }
+                
+                @Override
+                public void close() throws IOException {
+                    csv.close();
+                }
+            };
+        }
+        throw new IOException("Only .csv and .xlsx files can be imported");
+    }
+}
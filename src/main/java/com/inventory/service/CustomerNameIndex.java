@@ -0,0 +1,239 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+import com.inventory.service.CustomerRepository.ChangeType;
+import com.inventory.service.CustomerRepository.CustomerChange;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * CustomerNameIndex - Customer IDs by name, held in memory
+ * Features:
+ * - O(1) lookup of the customers with a given name
+ * - Names compare case-insensitively (Unicode case folding), with runs of
+ *   whitespace treated as one space and leading/trailing spaces ignored
+ * - Duplicate names are kept: a lookup returns every ID with that name
+ * - Safe for lookups from any thread while customers are added or edited
+ * - Follows CustomerRepository changes
+ * - Built from the CustomerRepository snapshot, so customers are read
+ *   from the database once for the repository and both indexes
+ * - Built once in the background; isReady() tells when lookups can use it
+ */
+public class CustomerNameIndex {
+    
+    private static final int BUILD_PAGE_SIZE = 5000;
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+", Pattern.UNICODE_CHARACTER_CLASS);
+    private static final String[] NO_IDS = new String[0];
+    
+    private static volatile CustomerNameIndex instance;
+    
+    private final CustomerRepository repository;
+    
+    // Name key -> IDs with that name; arrays are never changed once published
+    private final Map<String, String[]> idsByName = new ConcurrentHashMap<>();
+    
+    // ID -> name key it is indexed under, so a rename can drop the old entry
+    private final Map<String, String> nameById = new ConcurrentHashMap<>();
+    
+    // Removed while the initial build was still reading; the build must not bring them back
+    private final Set<String> removedDuringBuild = new HashSet<>();
+    private boolean building;
+    private volatile boolean ready;
+    private final CountDownLatch built = new CountDownLatch(1);
+    
+    /**
+     * @param repository customers to build from; its snapshot is read once by build()
+     */
+    public CustomerNameIndex(CustomerRepository repository) {
+        this.repository = repository;
+    }
+    
+    public static CustomerNameIndex getInstance() {
+        CustomerNameIndex index = instance;
+        if (index == null) {
+            synchronized (CustomerNameIndex.class) {
+                index = instance;
+                if (index == null) {
+                    CustomerRepository repository = CustomerRepository.getInstance();
+                    index = new CustomerNameIndex(repository);
+                    repository.addChangeListener(index::customerChanged);
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * Start the initial build on a background thread, unless it is
+     * running or done already
+     */
+    public synchronized void buildInBackground() {
+        if (building || ready) {
+            return;
+        }
+        building = true;
+        Thread thread = new Thread(this::build, "customer-name-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * True once every customer has been indexed
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Wait for the initial build. Returns false if it failed or did not
+     * finish in time.
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        if (!ready) {
+            built.await(timeout, unit);
+        }
+        return ready;
+    }
+    
+    /**
+     * IDs of all customers with this name; empty if there is none,
+     * more than one if the name is shared
+     */
+    public List<String> findIds(String name) {
+        String[] ids = idsByName.getOrDefault(key(name), NO_IDS);
+        return Collections.unmodifiableList(Arrays.asList(ids));
+    }
+    
+    /**
+     * Key the customer's name is indexed under, or null if the customer is
+     * not indexed (yet)
+     */
+    public String findNameKey(String customerId) {
+        return customerId != null ? nameById.get(customerId) : null;
+    }
+    
+    /**
+     * Index a new customer or re-index an edited one
+     */
+    public synchronized void put(Customer customer) {
+        if (customer == null || customer.getId() == null) {
+            return;
+        }
+        removedDuringBuild.remove(customer.getId());
+        index(customer.getId(), key(customer.getName()));
+    }
+    
+    /**
+     * Keep the index in step with adds, edits and deletes from any screen
+     */
+    public void customerChanged(CustomerChange change) {
+        if (change.getType() == ChangeType.REMOVED) {
+            remove(change.getCustomerId());
+        } else {
+            put(change.getCustomer());
+        }
+    }
+    
+    /**
+     * Forget a deleted customer
+     */
+    public synchronized void remove(String customerId) {
+        if (customerId == null) {
+            return;
+        }
+        if (building) {
+            removedDuringBuild.add(customerId);
+        }
+        String oldKey = nameById.remove(customerId);
+        if (oldKey != null) {
+            idsByName.computeIfPresent(oldKey, (k, ids) -> without(ids, customerId));
+        }
+    }
+    
+    /**
+     * Key a name is indexed under: NFKC-normalized, case-folded, single spaces
+     */
+    public static String key(String name) {
+        if (name == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(name, Normalizer.Form.NFKC);
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        // Upper then lower folds characters like the final sigma and the dotless i
+        return normalized.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+    
+    private void build() {
+        try {
+            // The repository's one load; changes after it arrive as events
+            List<Customer> customers = repository.getSnapshot().getCustomers();
+            for (int offset = 0; offset < customers.size(); offset += BUILD_PAGE_SIZE) {
+                List<Customer> page = customers.subList(offset, Math.min(offset + BUILD_PAGE_SIZE, customers.size()));
+                synchronized (this) {
+                    for (Customer customer : page) {
+                        // A customer put() while building is newer than the page
+                        String id = customer.getId();
+                        if (id != null && !nameById.containsKey(id) && !removedDuringBuild.contains(id)) {
+                            index(id, key(customer.getName()));
+                        }
+                    }
+                }
+            }
+            ready = true;
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        } finally {
+            synchronized (this) {
+                building = false;
+                removedDuringBuild.clear();
+            }
+            built.countDown();
+        }
+    }
+    
+    /**
+     * Move an ID to a name key. Callers hold the lock.
+     */
+    private void index(String customerId, String newKey) {
+        String oldKey = nameById.put(customerId, newKey);
+        if (newKey.equals(oldKey)) {
+            return;
+        }
+        if (oldKey != null) {
+            idsByName.computeIfPresent(oldKey, (k, ids) -> without(ids, customerId));
+        }
+        idsByName.merge(newKey, new String[] {customerId}, (ids, added) -> {
+            String[] grown = Arrays.copyOf(ids, ids.length + 1);
+            grown[ids.length] = customerId;
+            return grown;
+        });
+    }
+    
+    /**
+     * Copy without the ID, or null (drops the map entry) if nothing is left
+     */
+    private static String[] without(String[] ids, String customerId) {
+        String[] remaining = new String[ids.length];
+        int n = 0;
+        for (String id : ids) {
+            if (!id.equals(customerId)) {
+                remaining[n++] = id;
+            }
+        }
+        return n == 0 ? null : Arrays.copyOf(remaining, n);
+    }
+}
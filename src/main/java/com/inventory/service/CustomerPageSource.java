@@ -0,0 +1,42 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+
+import java.util.List;
+
+/**
+ * CustomerPageSource - Customers read a page at a time, in a stable order
+ *
+ * Implementations are called from a background thread.
+ */
+public interface CustomerPageSource {
+    
+    /**
+     * Number of customers available
+     */
+    int getCustomerCount();
+    
+    /**
+     * Customers at positions offset .. offset + limit - 1 (fewer at the end)
+     */
+    List<Customer> getCustomers(int offset, int limit);
+    
+    /**
+     * True if a customer added later comes after every customer there is now,
+     * so a table can append it without reading the pages again. Sources
+     * that cannot promise this keep the default.
+     */
+    default boolean addsLast() {
+        return false;
+    }
+    
+    /**
+     * Drop a deleted customer, so pages read afterwards line up with a table
+     * that has already removed its row. Sources that query the database every
+     * time see the deletion anyway and keep this default.
+     */
+    default void removeCustomer(String customerId) {
+    }
+}
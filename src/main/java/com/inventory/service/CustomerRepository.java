@@ -0,0 +1,543 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+import com.inventory.util.Money;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * CustomerRepository - One shared, in-memory customer list for all screens
+ * Features:
+ * - Loaded from the database once, on first use, instead of once per screen
+ * - Immutable, versioned snapshots; readers never see a half-applied change,
+ *   and a change copies only the chunk of customers it touches
+ * - Add, edit and delete are applied as deltas and announced to listeners,
+ *   so other screens update without re-reading every customer
+ * - Customers added together (an import chunk) are one delta and one event
+ * - Serves as a CustomerPageSource for paged tables and streamed combos
+ * - Arrears follow CustomerArrearsLedger, so reports and exports built from
+ *   the snapshot include sales saved since startup; they are announced on
+ *   their own, not as an edit, so indexes and name lists are left alone
+ *
+ * Screens report their changes with customerAdded/Updated/Removed after
+ * the database write has succeeded. Customers in a snapshot are shared;
+ * change a copyOf() them, never the instance itself.
+ */
+public class CustomerRepository implements CustomerPageSource {
+    
+    private static final int LOAD_PAGE_SIZE = 5000;
+    private static final int CHUNK_SIZE = 512;
+    
+    private static volatile CustomerRepository instance;
+    
+    public enum ChangeType {
+        ADDED, UPDATED, REMOVED
+    }
+    
+    /**
+     * One add, edit or delete
+     */
+    public static final class CustomerChange {
+        private final ChangeType type;
+        private final String customerId;
+        private final Customer customer;
+        private final Customer previous;
+        private final long version;
+        
+        CustomerChange(ChangeType type, String customerId, Customer customer, Customer previous, long version) {
+            this.type = type;
+            this.customerId = customerId;
+            this.customer = customer;
+            this.previous = previous;
+            this.version = version;
+        }
+        
+        public ChangeType getType() {
+            return type;
+        }
+        
+        public String getCustomerId() {
+            return customerId;
+        }
+        
+        /**
+         * Customer after the change; null when removed
+         */
+        public Customer getCustomer() {
+            return customer;
+        }
+        
+        /**
+         * Customer before the change, if the list was loaded; null when added
+         */
+        public Customer getPrevious() {
+            return previous;
+        }
+        
+        public long getVersion() {
+            return version;
+        }
+    }
+    
+    public interface CustomerChangeListener {
+        /**
+         * Called on the thread that reported the change
+         */
+        void customerChanged(CustomerChange change);
+        
+        /**
+         * Called once for changes reported together, in version order.
+         * Listeners that can handle them at once override this.
+         */
+        default void customersChanged(List<CustomerChange> changes) {
+            for (CustomerChange change : changes) {
+                customerChanged(change);
+            }
+        }
+        
+        /**
+         * Called when a loaded customer's balance was taken over from the
+         * ledger. Not an edit: no version, nothing else about the customer
+         * changed.
+         */
+        default void arrearsChanged(String customerId, long arrears) {
+        }
+    }
+    
+    /**
+     * All customers at one version; never changes once published.
+     * Held in fixed-size chunks, so a change copies only the chunks it
+     * touches and the small array of chunk references.
+     */
+    public static final class Snapshot {
+        private final long version;
+        private final Customer[][] chunks;
+        private final int size;
+        private final List<Customer> customers = new CustomerList();
+        
+        private Snapshot(long version, Customer[][] chunks, int size) {
+            this.version = version;
+            this.chunks = chunks;
+            this.size = size;
+        }
+        
+        static Snapshot of(long version, List<Customer> customers) {
+            Customer[][] chunks = new Customer[(customers.size() + CHUNK_SIZE - 1) / CHUNK_SIZE][];
+            for (int i = 0; i < chunks.length; i++) {
+                chunks[i] = customers.subList(i * CHUNK_SIZE, Math.min((i + 1) * CHUNK_SIZE, customers.size()))
+                    .toArray(new Customer[CHUNK_SIZE]);
+            }
+            return new Snapshot(version, chunks, customers.size());
+        }
+        
+        /**
+         * Version of the last add, edit or delete in it; arrears taken over
+         * from the ledger do not change it
+         */
+        public long getVersion() {
+            return version;
+        }
+        
+        public List<Customer> getCustomers() {
+            return customers;
+        }
+        
+        public int size() {
+            return size;
+        }
+        
+        Customer get(int position) {
+            return chunks[position / CHUNK_SIZE][position % CHUNK_SIZE];
+        }
+        
+        /**
+         * Read-only list view of the chunks
+         */
+        private final class CustomerList extends AbstractList<Customer> implements RandomAccess {
+            @Override
+            public Customer get(int index) {
+                if (index < 0 || index >= size) {
+                    throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+                }
+                return Snapshot.this.get(index);
+            }
+            
+            @Override
+            public int size() {
+                return size;
+            }
+        }
+    }
+    
+    /**
+     * A snapshot being changed; a chunk is copied the first time it is
+     * written and changed in place after that
+     */
+    private static final class SnapshotEdit {
+        private final List<Customer[]> chunks;
+        private final Set<Customer[]> copied = new HashSet<>();
+        private int size;
+        
+        SnapshotEdit(Snapshot snapshot) {
+            this.chunks = new ArrayList<>(Arrays.asList(snapshot.chunks));
+            this.size = snapshot.size;
+        }
+        
+        Customer get(int position) {
+            return chunks.get(position / CHUNK_SIZE)[position % CHUNK_SIZE];
+        }
+        
+        void set(int position, Customer customer) {
+            int index = position / CHUNK_SIZE;
+            Customer[] chunk = chunks.get(index);
+            if (!copied.contains(chunk)) {
+                chunk = chunk.clone();
+                copied.add(chunk);
+                chunks.set(index, chunk);
+            }
+            chunk[position % CHUNK_SIZE] = customer;
+        }
+        
+        /**
+         * Append a customer; returns its position
+         */
+        int add(Customer customer) {
+            if (size == chunks.size() * CHUNK_SIZE) {
+                Customer[] chunk = new Customer[CHUNK_SIZE];
+                copied.add(chunk);
+                chunks.add(chunk);
+            }
+            set(size, customer);
+            return size++;
+        }
+        
+        /**
+         * Close the gaps left by removed customers from a position on,
+         * telling the positions that moved
+         */
+        void compact(int from, Map<String, Integer> positions) {
+            int to = from;
+            for (int i = from; i < size; i++) {
+                Customer customer = get(i);
+                if (customer == null) {
+                    continue;
+                }
+                if (i != to) {
+                    set(to, customer);
+                    positions.put(customer.getId(), to);
+                }
+                to++;
+            }
+            int keptChunks = (to + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            for (int i = to; i < Math.min(size, keptChunks * CHUNK_SIZE); i++) {
+                set(i, null);
+            }
+            while (chunks.size() > keptChunks) {
+                chunks.remove(chunks.size() - 1);
+            }
+            size = to;
+        }
+        
+        Snapshot publish(long version) {
+            return new Snapshot(version, chunks.toArray(new Customer[0][]), size);
+        }
+    }
+    
+    private final CustomerPageSource databaseSource;
+    private final List<CustomerChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final Object loadLock = new Object();
+    
+    private volatile Snapshot snapshot;
+    private long version;
+    
+    // Customer ID -> position in the current snapshot; null until loaded
+    private Map<String, Integer> positions;
+    
+    // Version of the last change to each customer changed since startup
+    private final Map<String, Long> changeVersions = new ConcurrentHashMap<>();
+    
+    // Changes reported while the first load was reading; replayed on top of it
+    private List<CustomerChange> changesDuringLoad;
+    
+    public CustomerRepository(CustomerPageSource databaseSource) {
+        this.databaseSource = databaseSource;
+    }
+    
+    public static CustomerRepository getInstance() {
+        CustomerRepository repository = instance;
+        if (repository == null) {
+            synchronized (CustomerRepository.class) {
+                repository = instance;
+                if (repository == null) {
+                    repository = new CustomerRepository(new DatabaseCustomerPageSource(new CustomerService(), null));
+                    CustomerArrearsLedger.getInstance().addArrearsListener(repository::arrearsChanged);
+                    instance = repository;
+                }
+            }
+        }
+        return repository;
+    }
+    
+    public void addChangeListener(CustomerChangeListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeChangeListener(CustomerChangeListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * All customers. The first call reads them from the database,
+     * so call it off the event dispatch thread.
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            return current;
+        }
+        synchronized (loadLock) {
+            current = snapshot;
+            if (current != null) {
+                return current;
+            }
+            long loadVersion;
+            synchronized (this) {
+                loadVersion = version;
+                changesDuringLoad = new ArrayList<>();
+            }
+            
+            List<Customer> customers = new ArrayList<>();
+            try {
+                int offset = 0;
+                while (true) {
+                    List<Customer> page = databaseSource.getCustomers(offset, LOAD_PAGE_SIZE);
+                    customers.addAll(page);
+                    offset += page.size();
+                    if (page.size() < LOAD_PAGE_SIZE) {
+                        break;
+                    }
+                }
+            } catch (RuntimeException ex) {
+                synchronized (this) {
+                    changesDuringLoad = null;
+                }
+                throw ex;
+            }
+            
+            synchronized (this) {
+                positions = new HashMap<>(customers.size() * 4 / 3 + 1);
+                for (int i = 0; i < customers.size(); i++) {
+                    positions.put(customers.get(i).getId(), i);
+                }
+                snapshot = Snapshot.of(loadVersion, customers);
+                apply(changesDuringLoad);
+                changesDuringLoad = null;
+                current = snapshot;
+            }
+            return current;
+        }
+    }
+    
+    /**
+     * Current version; changes with every add, edit or delete
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+    
+    /**
+     * Version of the last change reported for a customer, or 0 if none was.
+     * Values read at a later version are up to date.
+     */
+    public long getChangeVersion(String customerId) {
+        return changeVersions.getOrDefault(customerId, 0L);
+    }
+    
+    public void customerAdded(Customer customer) {
+        if (customer != null && customer.getId() != null) {
+            publish(ChangeType.ADDED, customer.getId(), customer);
+        }
+    }
+    
+    /**
+     * Announce customers saved together, e.g. one chunk of an import
+     */
+    public void customersAdded(List<Customer> customers) {
+        List<CustomerChange> changes = new ArrayList<>(customers.size());
+        synchronized (this) {
+            for (Customer customer : customers) {
+                if (customer != null && customer.getId() != null) {
+                    changes.add(change(ChangeType.ADDED, customer.getId(), customer));
+                }
+            }
+            apply(changes);
+        }
+        fire(changes);
+    }
+    
+    public void customerUpdated(Customer customer) {
+        if (customer != null && customer.getId() != null) {
+            publish(ChangeType.UPDATED, customer.getId(), customer);
+        }
+    }
+    
+    public void customerRemoved(String customerId) {
+        if (customerId != null) {
+            publish(ChangeType.REMOVED, customerId, null);
+        }
+    }
+    
+    /**
+     * Take over a balance posted to the ledger; a loaded customer whose
+     * arrears differ is replaced by an updated copy at the same version
+     */
+    public void arrearsChanged(String customerId, long arrears) {
+        synchronized (this) {
+            Integer position = positions != null ? positions.get(customerId) : null;
+            if (position == null) {
+                return;
+            }
+            Customer customer = snapshot.get(position);
+            if (Money.ofDecimal(customer.getArrears()) == arrears) {
+                return;
+            }
+            Customer updated = copyOf(customer);
+            updated.setArrears(Money.toDecimal(arrears));
+            SnapshotEdit edit = new SnapshotEdit(snapshot);
+            edit.set(position, updated);
+            snapshot = edit.publish(snapshot.getVersion());
+        }
+        for (CustomerChangeListener listener : listeners) {
+            listener.arrearsChanged(customerId, arrears);
+        }
+    }
+    
+    /**
+     * A customer with the same fields, to be changed without touching the
+     * shared instance
+     */
+    public static Customer copyOf(Customer customer) {
+        Customer copy = new Customer();
+        copy.setId(customer.getId());
+        copy.setName(customer.getName());
+        copy.setOfficeNumber(customer.getOfficeNumber());
+        copy.setContactPerson(customer.getContactPerson());
+        copy.setBillingAddress(customer.getBillingAddress());
+        copy.setShippingAddress(customer.getShippingAddress());
+        copy.setCity(customer.getCity());
+        copy.setBankName(customer.getBankName());
+        copy.setAccountNumber(customer.getAccountNumber());
+        copy.setEmail(customer.getEmail());
+        copy.setPhone(customer.getPhone());
+        copy.setMobileNumber(customer.getMobileNumber());
+        copy.setPrivateNote(customer.getPrivateNote());
+        copy.setOnlineInfo(customer.getOnlineInfo());
+        copy.setOtherInfo(customer.getOtherInfo());
+        copy.setPrivate(customer.isPrivate());
+        copy.setArrears(customer.getArrears());
+        return copy;
+    }
+    
+    @Override
+    public int getCustomerCount() {
+        return getSnapshot().size();
+    }
+    
+    /**
+     * New customers are appended to the snapshot
+     */
+    @Override
+    public boolean addsLast() {
+        return true;
+    }
+    
+    @Override
+    public List<Customer> getCustomers(int offset, int limit) {
+        List<Customer> customers = getSnapshot().getCustomers();
+        int end = Math.min(offset + limit, customers.size());
+        return offset < end ? customers.subList(offset, end) : Collections.emptyList();
+    }
+    
+    private void publish(ChangeType type, String customerId, Customer customer) {
+        List<CustomerChange> changes;
+        synchronized (this) {
+            changes = Collections.singletonList(change(type, customerId, customer));
+            apply(changes);
+        }
+        fire(changes);
+    }
+    
+    /**
+     * Next version of a customer; call holding this
+     */
+    private CustomerChange change(ChangeType type, String customerId, Customer customer) {
+        Integer position = positions != null ? positions.get(customerId) : null;
+        Customer previous = position != null ? snapshot.get(position) : null;
+        changeVersions.put(customerId, ++version);
+        return new CustomerChange(type, customerId, customer, previous, version);
+    }
+    
+    /**
+     * Apply versioned changes to the snapshot, or keep them for the load
+     * running now; call holding this
+     */
+    private void apply(List<CustomerChange> changes) {
+        if (snapshot == null) {
+            if (changesDuringLoad != null) {
+                changesDuringLoad.addAll(changes);
+            }
+            return;
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        // Adding or updating replaces a customer with the same ID, so replaying a change is harmless
+        SnapshotEdit edit = new SnapshotEdit(snapshot);
+        int firstRemoved = -1;
+        for (CustomerChange change : changes) {
+            Integer position = positions.get(change.getCustomerId());
+            if (change.getType() != ChangeType.REMOVED) {
+                if (position != null) {
+                    edit.set(position, change.getCustomer());
+                } else {
+                    positions.put(change.getCustomerId(), edit.add(change.getCustomer()));
+                }
+            } else if (position != null) {
+                // Left as a gap and closed below in one pass
+                edit.set(position, null);
+                positions.remove(change.getCustomerId());
+                firstRemoved = firstRemoved < 0 ? position : Math.min(firstRemoved, position);
+            }
+        }
+        if (firstRemoved >= 0) {
+            edit.compact(firstRemoved, positions);
+        }
+        snapshot = edit.publish(changes.get(changes.size() - 1).getVersion());
+    }
+    
+    private void fire(List<CustomerChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        for (CustomerChangeListener listener : listeners) {
+            if (changes.size() == 1) {
+                listener.customerChanged(changes.get(0));
+            } else {
+                listener.customersChanged(changes);
+            }
+        }
+    }
+}
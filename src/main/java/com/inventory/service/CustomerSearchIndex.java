@@ -0,0 +1,458 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+import com.inventory.service.CustomerRepository.ChangeType;
+import com.inventory.service.CustomerRepository.CustomerChange;
+import com.inventory.service.CustomerRepository.CustomerChangeListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * CustomerSearchIndex - In-memory trigram index for the customer search box
+ * Features:
+ * - Case-insensitive "contains" search over name, phone, mobile, email,
+ *   city and account number
+ * - Phone, mobile and account numbers also match without spaces or dashes
+ * - Query text is matched literally (no regex), so "A+B Traders" just works
+ * - Follows CustomerRepository changes instead of being rebuilt
+ * - Built from the CustomerRepository snapshot, so customers are read
+ *   from the database once for the repository and both indexes
+ * - Built once in the background; isReady() tells when searches can use it
+ *
+ * A search looks up the rarest trigram of the query and checks only the
+ * customers in its posting list against the query text.
+ * Single characters and pairs have posting lists of their own, so queries
+ * shorter than three characters are answered from those.
+ */
+public class CustomerSearchIndex implements CustomerChangeListener {
+    
+    private static final int GRAM_LENGTH = 3;
+    private static final int BUILD_PAGE_SIZE = 5000;
+    private static final int MIN_COMPACT_REMOVED = 1024;
+    
+    // Separates the fields of one customer, so no match spans two fields
+    private static final char FIELD_SEPARATOR = '\n';
+    
+    private static volatile CustomerSearchIndex instance;
+    
+    /**
+     * Document numbers of one trigram in ascending order, stored as
+     * variable-length gaps (mostly one byte each). Numbers only grow,
+     * so adding is an append.
+     */
+    private static final class Postings {
+        private byte[] gaps = new byte[4];
+        private int length;
+        private int count;
+        private int lastDoc = -1;
+        
+        void add(int doc) {
+            if (length + 5 > gaps.length) {
+                gaps = Arrays.copyOf(gaps, gaps.length + (gaps.length >> 1) + 5);
+            }
+            int gap = doc - lastDoc;
+            while (gap >= 0x80) {
+                gaps[length++] = (byte) (gap | 0x80);
+                gap >>>= 7;
+            }
+            gaps[length++] = (byte) gap;
+            lastDoc = doc;
+            count++;
+        }
+    }
+    
+    private final CustomerRepository repository;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final Map<String, Integer> docsByCustomerId = new HashMap<>();
+    
+    // Per document: customer ID and searchable text; text is null once removed
+    private String[] customerIds = new String[1024];
+    private String[] texts = new String[1024];
+    private int docCount;
+    private int removedCount;
+    
+    // Removed while the initial build was still reading; the build must not bring them back
+    private final Set<String> removedDuringBuild = new HashSet<>();
+    private boolean building;
+    private volatile boolean ready;
+    
+    /**
+     * @param repository customers to build from; its snapshot is read once by build()
+     */
+    public CustomerSearchIndex(CustomerRepository repository) {
+        this.repository = repository;
+    }
+    
+    public static CustomerSearchIndex getInstance() {
+        CustomerSearchIndex index = instance;
+        if (index == null) {
+            synchronized (CustomerSearchIndex.class) {
+                index = instance;
+                if (index == null) {
+                    CustomerRepository repository = CustomerRepository.getInstance();
+                    index = new CustomerSearchIndex(repository);
+                    repository.addChangeListener(index);
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+    
+    /**
+     * Start the initial build on a background thread, unless it is
+     * running or done already
+     */
+    public void buildInBackground() {
+        lock.writeLock().lock();
+        try {
+            if (building || ready) {
+                return;
+            }
+            building = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Thread thread = new Thread(this::build, "customer-search-index");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * True once every customer has been indexed
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * IDs of the customers whose indexed fields contain the query,
+     * in the order they were indexed
+     */
+    public List<String> search(String query) {
+        List<String> results = new ArrayList<>();
+        String text = normalize(query);
+        if (text.isEmpty()) {
+            return results;
+        }
+        
+        lock.readLock().lock();
+        try {
+            // Short queries have their own list; longer ones use the rarest trigram in them
+            Postings candidates = text.length() < GRAM_LENGTH
+                ? postings.get(gram(text, 0, text.length()))
+                : rarestPostings(text);
+            if (candidates == null) {
+                return results;
+            }
+            // Every match is in the list; checking its documents is enough
+            byte[] gaps = candidates.gaps;
+            int doc = -1;
+            int position = 0;
+            while (position < candidates.length) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = gaps[position++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += gap;
+                if (texts[doc] != null && texts[doc].contains(text)) {
+                    results.add(customerIds[doc]);
+                }
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    /**
+     * Index a new customer or re-index an edited one
+     */
+    public void put(Customer customer) {
+        if (customer == null || customer.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removedDuringBuild.remove(customer.getId());
+            removeDocument(customer.getId());
+            addDocument(customer);
+            // Every edit leaves the old document behind, so edits compact as well
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Keep the index in step with adds, edits and deletes from any screen
+     */
+    @Override
+    public void customerChanged(CustomerChange change) {
+        if (change.getType() == ChangeType.REMOVED) {
+            remove(change.getCustomerId());
+        } else {
+            put(change.getCustomer());
+        }
+    }
+    
+    /**
+     * Apply a batch, e.g. an import chunk, holding the write lock once
+     */
+    @Override
+    public void customersChanged(List<CustomerChange> changes) {
+        lock.writeLock().lock();
+        try {
+            for (CustomerChange change : changes) {
+                customerChanged(change);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Forget a deleted customer
+     */
+    public void remove(String customerId) {
+        if (customerId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (building) {
+                removedDuringBuild.add(customerId);
+            }
+            removeDocument(customerId);
+            compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    /**
+     * Number of customers in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docsByCustomerId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private void build() {
+        try {
+            // The repository's one load; changes after it arrive as events
+            List<Customer> customers = repository.getSnapshot().getCustomers();
+            for (int offset = 0; offset < customers.size(); offset += BUILD_PAGE_SIZE) {
+                List<Customer> page = customers.subList(offset, Math.min(offset + BUILD_PAGE_SIZE, customers.size()));
+                lock.writeLock().lock();
+                try {
+                    for (Customer customer : page) {
+                        // A customer put() while building is newer than the page
+                        if (customer.getId() != null
+                                && !docsByCustomerId.containsKey(customer.getId())
+                                && !removedDuringBuild.contains(customer.getId())) {
+                            addDocument(customer);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+            ready = true;
+        } catch (RuntimeException ex) {
+            ex.printStackTrace();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                building = false;
+                removedDuringBuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+    
+    private void addDocument(Customer customer) {
+        String text = searchText(customer);
+        if (docCount == texts.length) {
+            texts = Arrays.copyOf(texts, docCount * 2);
+            customerIds = Arrays.copyOf(customerIds, docCount * 2);
+        }
+        int doc = docCount++;
+        texts[doc] = text;
+        customerIds[doc] = customer.getId();
+        docsByCustomerId.put(customer.getId(), doc);
+        
+        addPostings(text, doc);
+    }
+    
+    /**
+     * Add a document to the posting list of each distinct gram of one to
+     * three characters in its text
+     */
+    private void addPostings(String text, int doc) {
+        long[] grams = new long[text.length() * GRAM_LENGTH];
+        int n = 0;
+        for (int i = 0; i < text.length(); i++) {
+            for (int length = 1; length <= GRAM_LENGTH && i + length <= text.length(); length++) {
+                long gram = gram(text, i, length);
+                if (gram < 0) {
+                    break;
+                }
+                grams[n++] = gram;
+            }
+        }
+        Arrays.sort(grams, 0, n);
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                postings.computeIfAbsent(grams[i], g -> new Postings()).add(doc);
+            }
+        }
+    }
+    
+    private void removeDocument(String customerId) {
+        Integer doc = docsByCustomerId.remove(customerId);
+        if (doc != null) {
+            // Postings still list the document; searches skip it by its missing text
+            texts[doc] = null;
+            customerIds[doc] = null;
+            removedCount++;
+        }
+    }
+    
+    /**
+     * Compact once removed and replaced documents make up half the index
+     */
+    private void compactIfSparse() {
+        if (removedCount > MIN_COMPACT_REMOVED && removedCount > docCount / 2) {
+            compact();
+        }
+    }
+    
+    /**
+     * Re-number the live documents and rebuild the postings without the removed ones
+     */
+    private void compact() {
+        String[] oldIds = customerIds;
+        String[] oldTexts = texts;
+        int oldCount = docCount;
+        
+        postings.clear();
+        docsByCustomerId.clear();
+        customerIds = new String[Math.max(1024, oldCount - removedCount)];
+        texts = new String[customerIds.length];
+        docCount = 0;
+        removedCount = 0;
+        
+        for (int doc = 0; doc < oldCount; doc++) {
+            if (oldTexts[doc] == null) {
+                continue;
+            }
+            int newDoc = docCount++;
+            customerIds[newDoc] = oldIds[doc];
+            texts[newDoc] = oldTexts[doc];
+            docsByCustomerId.put(oldIds[doc], newDoc);
+            addPostings(oldTexts[doc], newDoc);
+        }
+    }
+    
+    /**
+     * Posting list of the query trigram with the fewest documents,
+     * or null if one of its trigrams occurs nowhere
+     */
+    private Postings rarestPostings(String text) {
+        Postings rarest = null;
+        for (int i = 0; i + GRAM_LENGTH <= text.length(); i++) {
+            long gram = gram(text, i, GRAM_LENGTH);
+            if (gram < 0) {
+                continue;
+            }
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return null;
+            }
+            if (rarest == null || list.count < rarest.count) {
+                rarest = list;
+            }
+        }
+        return rarest;
+    }
+    
+    /**
+     * One to three characters packed into one key together with their count,
+     * or -1 if they cross a field boundary
+     */
+    private static long gram(String text, int start, int length) {
+        long gram = 0;
+        for (int i = start; i < start + length; i++) {
+            char c = text.charAt(i);
+            if (c == FIELD_SEPARATOR) {
+                return -1;
+            }
+            gram = (gram << 16) | c;
+        }
+        return (gram << 2) | length;
+    }
+    
+    private static String searchText(Customer customer) {
+        StringBuilder text = new StringBuilder();
+        appendField(text, customer.getName());
+        appendField(text, customer.getPhone());
+        appendField(text, digitsOnly(customer.getPhone()));
+        appendField(text, customer.getMobileNumber());
+        appendField(text, digitsOnly(customer.getMobileNumber()));
+        appendField(text, customer.getEmail());
+        appendField(text, customer.getCity());
+        appendField(text, customer.getAccountNumber());
+        appendField(text, digitsOnly(customer.getAccountNumber()));
+        return text.toString();
+    }
+    
+    private static void appendField(StringBuilder text, String value) {
+        String normalized = normalize(value);
+        if (!normalized.isEmpty()) {
+            text.append(normalized).append(FIELD_SEPARATOR);
+        }
+    }
+    
+    private static String digitsOnly(String value) {
+        if (value == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isDigit(value.charAt(i))) {
+                digits.append(value.charAt(i));
+            }
+        }
+        // Same as the original text; no need to index it twice
+        return digits.length() == value.trim().length() ? null : digits.toString();
+    }
+    
+    private static String normalize(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.trim().replace(FIELD_SEPARATOR, ' ').toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,21 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+/**
+ * CustomerSortKey - Customer fields the database can order the customer list by
+ */
+public enum CustomerSortKey {
+    ID,
+    NAME,
+    OFFICE_NUMBER,
+    CONTACT_PERSON,
+    BILLING_ADDRESS,
+    SHIPPING_ADDRESS,
+    CITY,
+    BANK_NAME,
+    ACCOUNT_NUMBER,
+    EMAIL,
+    PHONE,
+    MOBILE_NUMBER
+}
@@ -0,0 +1,75 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+
+import java.util.List;
+
+/**
+ * DatabaseCustomerPageSource - Customers read from the database with
+ * COUNT and LIMIT/OFFSET queries, optionally filtered by a search text
+ * and ordered by a column (ORDER BY in the query, ties broken by ID)
+ *
+ * Unsorted pages are in ID order. New customers get higher IDs than all
+ * existing ones, so they come last; in a sorted list they can land anywhere.
+ *
+ * Reading every customer in turn, as an export does, should use
+ * getCustomersAfter instead: OFFSET makes the database skip all earlier
+ * rows again for every page.
+ */
+public class DatabaseCustomerPageSource implements CustomerPageSource {
+    
+    private final CustomerService customerService;
+    private final String filter;
+    private final CustomerSortKey sortKey;
+    private final boolean ascending;
+    
+    /**
+     * @param filter search text, or null for all customers
+     */
+    public DatabaseCustomerPageSource(CustomerService customerService, String filter) {
+        this(customerService, filter, null, true);
+    }
+    
+    /**
+     * @param filter  search text, or null for all customers
+     * @param sortKey column to order by, or null for the database order
+     */
+    public DatabaseCustomerPageSource(CustomerService customerService, String filter,
+                                      CustomerSortKey sortKey, boolean ascending) {
+        this.customerService = customerService;
+        this.filter = filter != null && !filter.trim().isEmpty() ? filter.trim() : null;
+        this.sortKey = sortKey;
+        this.ascending = ascending;
+    }
+    
+    @Override
+    public int getCustomerCount() {
+        return customerService.getCustomerCount(filter);
+    }
+    
+    @Override
+    public boolean addsLast() {
+        return sortKey == null;
+    }
+    
+    @Override
+    public List<Customer> getCustomers(int offset, int limit) {
+        if (sortKey == null) {
+            return customerService.getCustomers(filter, offset, limit);
+        }
+        return customerService.getCustomers(filter, sortKey, ascending, offset, limit);
+    }
+    
+    /**
+     * The next customers in ID order after the last one read (keyset paging);
+     * each page costs the same however far into the list it is.
+     * Ignores the sort key.
+     *
+     * @param afterId ID of the last customer of the previous page, or null to start
+     */
+    public List<Customer> getCustomersAfter(String afterId, int limit) {
+        return customerService.getCustomersAfter(filter, afterId, limit);
+    }
+}
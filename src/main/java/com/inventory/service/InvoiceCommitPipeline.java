@@ -0,0 +1,362 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.controller.SalesController;
+import com.inventory.model.Invoice;
+import com.inventory.util.AppPaths;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * InvoiceCommitPipeline - Saves invoices without blocking the till
+ * Features:
+ * - Invoice is appended to the local InvoiceJournal and submit() returns
+ * - A background thread writes it to the main database; invoices arriving
+ *   within a few milliseconds of each other are saved as one batch, with
+ *   the headers and the line items of all of them inserted in one transaction
+ * - Failed writes are retried with exponential backoff; after MAX_ATTEMPTS
+ *   the invoice is reported FAILED and retried every few minutes
+ * - Invoices left in the journal are replayed on the next start, rebuilt
+ *   from the journal alone so a database outage cannot stop the replay
+ * - Listeners receive status changes for display
+ *
+ * An invoice may be in the database although no save reported it: saved
+ * just before a crash and replayed, or its save failed after the commit.
+ * Such invoices are looked up by number first and only saved if missing.
+ */
+public class InvoiceCommitPipeline {
+    
+    public enum CommitStatus {
+        JOURNALED,
+        COMMITTING,
+        COMMITTED,
+        RETRYING,
+        FAILED
+    }
+    
+    /**
+     * Persists an invoice in the main database
+     */
+    public interface InvoiceStore {
+        boolean save(Invoice invoice) throws Exception;
+        
+        /**
+         * Whether an invoice with this number is already in the database
+         */
+        boolean exists(String invoiceNo) throws Exception;
+        
+        /**
+         * Persist several invoices, e.g. with multi-row inserts in one
+         * transaction. Returns which invoices were saved; throwing means
+         * none of them were. By default each invoice is saved on its own,
+         * and one that fails is simply reported as not saved.
+         */
+        default boolean[] saveAll(List<Invoice> invoices) throws Exception {
+            boolean[] saved = new boolean[invoices.size()];
+            for (int i = 0; i < saved.length; i++) {
+                try {
+                    saved[i] = save(invoices.get(i));
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+            }
+            return saved;
+        }
+    }
+    
+    public interface CommitListener {
+        void commitStatusChanged(Invoice invoice, CommitStatus status, String message);
+    }
+    
+    private static final String JOURNAL_FILE = "invoice-journal.log";
+    
+    // Group commit: wait this long for more invoices before saving a batch
+    private static final long BATCH_WINDOW_MS = 5;
+    // Most invoices handed to the store at once
+    private static final int MAX_BATCH_SIZE = 100;
+    
+    private static final int MAX_ATTEMPTS = 8;
+    private static final long INITIAL_RETRY_DELAY_MS = 500;
+    private static final long MAX_RETRY_DELAY_MS = 60_000;
+    private static final long FAILED_RETRY_DELAY_MS = 5 * 60_000;
+    
+    private static volatile InvoiceCommitPipeline instance;
+    
+    private final InvoiceJournal journal;
+    private final InvoiceStore store;
+    private final ScheduledExecutorService executor;
+    private final List<CommitListener> listeners = new CopyOnWriteArrayList<>();
+    private final Queue<Invoice> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    
+    // Replayed from the journal and not yet looked up; commit thread only
+    private final Set<String> recovered = new HashSet<>();
+    
+    public InvoiceCommitPipeline(InvoiceJournal journal, InvoiceStore store) {
+        this.journal = journal;
+        this.store = store;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "invoice-commit");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+    
+    /**
+     * Get the pipeline shared by all sales screens. Invoices left over from
+     * a previous run are resubmitted when it is first created.
+     */
+    public static InvoiceCommitPipeline getInstance() {
+        InvoiceCommitPipeline pipeline = instance;
+        if (pipeline == null) {
+            synchronized (InvoiceCommitPipeline.class) {
+                pipeline = instance;
+                if (pipeline == null) {
+                    try {
+                        InvoiceJournal journal = new InvoiceJournal(AppPaths.resolve(JOURNAL_FILE));
+                        SalesController salesController = new SalesController();
+                        pipeline = new InvoiceCommitPipeline(journal, new InvoiceStore() {
+                            @Override
+                            public boolean save(Invoice invoice) {
+                                return salesController.saveInvoice(invoice);
+                            }
+                            
+                            @Override
+                            public boolean[] saveAll(List<Invoice> invoices) {
+                                // Multi-row inserts of all headers and all items, one transaction
+                                return salesController.saveInvoices(invoices);
+                            }
+                            
+                            @Override
+                            public boolean exists(String invoiceNo) {
+                                return salesController.invoiceExists(invoiceNo);
+                            }
+                        });
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException("Cannot open invoice journal", ex);
+                    }
+                    instance = pipeline;
+                    // Must see the replayed invoices too
+                    StockReservationService.getInstance();
+                    pipeline.recoverPending();
+                }
+            }
+        }
+        return pipeline;
+    }
+    
+    public void addCommitListener(CommitListener listener) {
+        listeners.add(listener);
+    }
+    
+    public void removeCommitListener(CommitListener listener) {
+        listeners.remove(listener);
+    }
+    
+    /**
+     * Journal the invoice and queue it for the database.
+     * Throws only if the invoice could not be written to the local journal:
+     * IOException, or ArithmeticException for an amount too large to record.
+     */
+    public void submit(Invoice invoice) throws IOException {
+        journal.append(invoice);
+        fireStatus(invoice, CommitStatus.JOURNALED, null);
+        enqueue(invoice);
+    }
+    
+    /**
+     * Number of invoices not yet stored in the main database
+     */
+    public int getPendingCount() {
+        return journal.getPendingCount();
+    }
+    
+    /**
+     * Numbers of the invoices not yet stored in the main database
+     */
+    public Set<String> getPendingInvoiceNos() {
+        return journal.getPendingInvoiceNos();
+    }
+    
+    /**
+     * Number of the last invoice submitted on this terminal, including earlier runs
+     */
+    public String getLastInvoiceNo() {
+        return journal.getLastInvoiceNo();
+    }
+    
+    /**
+     * Requeue invoices that were journaled by an earlier run; listeners see
+     * each of them as JOURNALED again
+     */
+    public void recoverPending() {
+        executor.execute(() -> replayPending(1));
+    }
+    
+    private void replayPending(int attempt) {
+        List<Invoice> pending;
+        try {
+            pending = journal.readPending();
+        } catch (RuntimeException ex) {
+            // Nothing was requeued; try again instead of waiting for the next start
+            ex.printStackTrace();
+            executor.schedule(() -> replayPending(attempt + 1), retryDelay(attempt), TimeUnit.MILLISECONDS);
+            return;
+        }
+        for (Invoice invoice : pending) {
+            recovered.add(invoice.getInvoiceNo());
+            fireStatus(invoice, CommitStatus.JOURNALED, null);
+            enqueue(invoice);
+        }
+    }
+    
+    public void shutdown() {
+        executor.shutdown();
+    }
+    
+    private void enqueue(Invoice invoice) {
+        queue.add(invoice);
+        if (flushScheduled.compareAndSet(false, true)) {
+            executor.schedule(this::flushBatch, BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void flushBatch() {
+        flushScheduled.set(false);
+        List<Invoice> batch = new ArrayList<>();
+        Invoice invoice;
+        while (batch.size() < MAX_BATCH_SIZE && (invoice = queue.poll()) != null) {
+            batch.add(invoice);
+        }
+        if (!queue.isEmpty() && flushScheduled.compareAndSet(false, true)) {
+            executor.execute(this::flushBatch);
+        }
+        if (!batch.isEmpty()) {
+            commitBatch(batch);
+        }
+    }
+    
+    private void commitBatch(List<Invoice> batch) {
+        for (Invoice invoice : batch) {
+            fireStatus(invoice, CommitStatus.COMMITTING, null);
+        }
+        
+        boolean[] saved = new boolean[batch.size()];
+        try {
+            // Replayed invoices may have been saved just before the crash
+            List<Invoice> unsaved = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                String invoiceNo = batch.get(i).getInvoiceNo();
+                saved[i] = recovered.remove(invoiceNo) && store.exists(invoiceNo);
+                if (!saved[i]) {
+                    unsaved.add(batch.get(i));
+                }
+            }
+            boolean[] savedNow = unsaved.isEmpty() ? new boolean[0] : store.saveAll(unsaved);
+            for (int i = 0, next = 0; i < saved.length; i++) {
+                if (!saved[i]) {
+                    saved[i] = savedNow[next++];
+                }
+            }
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            if (batch.size() == 1) {
+                retryOrFail(batch.get(0), 1, ex.getMessage());
+            } else {
+                // Retry one by one so a single bad invoice cannot hold up the rest
+                for (Invoice invoice : batch) {
+                    executor.execute(() -> attemptCommit(invoice, 1));
+                }
+            }
+            return;
+        }
+        
+        List<String> committed = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            if (saved[i]) {
+                committed.add(batch.get(i).getInvoiceNo());
+            }
+        }
+        markCommitted(committed);
+        
+        for (int i = 0; i < batch.size(); i++) {
+            if (saved[i]) {
+                fireStatus(batch.get(i), CommitStatus.COMMITTED, null);
+            } else {
+                retryOrFail(batch.get(i), 1, "Database rejected the invoice");
+            }
+        }
+    }
+    
+    private void attemptCommit(Invoice invoice, int attempt) {
+        fireStatus(invoice, CommitStatus.COMMITTING, null);
+        
+        boolean saved = false;
+        String error = "Database rejected the invoice";
+        try {
+            // The failed save may have reached the database after all
+            saved = store.exists(invoice.getInvoiceNo()) || store.save(invoice);
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            error = ex.getMessage();
+        }
+        
+        if (saved) {
+            markCommitted(List.of(invoice.getInvoiceNo()));
+            fireStatus(invoice, CommitStatus.COMMITTED, null);
+        } else {
+            retryOrFail(invoice, attempt, error);
+        }
+    }
+    
+    private void markCommitted(List<String> invoiceNos) {
+        if (invoiceNos.isEmpty()) {
+            return;
+        }
+        try {
+            journal.markCommitted(invoiceNos);
+        } catch (IOException ex) {
+            // Already in the database; worst case they are replayed once on restart
+            ex.printStackTrace();
+        }
+    }
+    
+    private void retryOrFail(Invoice invoice, int attempt, String error) {
+        if (attempt >= MAX_ATTEMPTS) {
+            // Stays in the journal; keep trying now and then, e.g. until the database is back
+            fireStatus(invoice, CommitStatus.FAILED, error);
+            executor.schedule(() -> attemptCommit(invoice, attempt + 1), FAILED_RETRY_DELAY_MS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        
+        fireStatus(invoice, CommitStatus.RETRYING, error);
+        executor.schedule(() -> attemptCommit(invoice, attempt + 1), retryDelay(attempt), TimeUnit.MILLISECONDS);
+    }
+    
+    private static long retryDelay(int attempt) {
+        return Math.min(INITIAL_RETRY_DELAY_MS << Math.min(attempt - 1, 20), MAX_RETRY_DELAY_MS);
+    }
+    
+    private void fireStatus(Invoice invoice, CommitStatus status, String message) {
+        for (CommitListener listener : listeners) {
+            try {
+                listener.commitStatusChanged(invoice, status, message);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+import com.inventory.model.Invoice;
+import com.inventory.model.InvoiceItem;
+import com.inventory.model.Product;
+import com.inventory.util.Money;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * InvoiceJournal - Append-only local journal of invoices waiting to be
+ * written to the main database
+ *
+ * Every record is one line and is forced to disk before append() returns,
+ * so an invoice accepted at the till survives a crash or a database outage.
+ * Line format (tab separated, fields escaped, amounts in minor units):
+ * - V  3           (format version; first line of the file)
+ * - P  invoiceNo customerId customerName date amounts... paymentType reference notes itemCount items...
+ *      (each item: productId productName quantity unitPrice totalPrice)
+ * - C  invoiceNo   (invoice has been committed to the database)
+ * - H  invoiceNo   (last invoice journaled before the file was compacted)
+ * - Q  invoiceNo   (record could not be read; copied to the quarantine file)
+ *
+ * A pending record holds everything needed to save the invoice again, so
+ * it is rebuilt without the database, which may be the reason it is pending.
+ *
+ * Journals of older versions are converted when opened: without a V line
+ * amounts were decimal (e.g. 12.50), format 2 had no customer and product names.
+ */
+public class InvoiceJournal {
+    
+    private static final String PENDING = "P";
+    private static final String COMMITTED = "C";
+    private static final String LAST_INVOICE = "H";
+    private static final String QUARANTINED = "Q";
+    private static final String VERSION = "V";
+    
+    // 1: amounts as decimal strings, no V line; 2: amounts in minor units;
+    // 3: customer and product names
+    private static final int FORMAT_VERSION = 3;
+    private static final String VERSION_LINE = VERSION + "\t" + FORMAT_VERSION;
+    
+    // Field value for null
+    private static final String NULL_FIELD = "\\0";
+    
+    // Unreadable pending records are moved here for someone to look at
+    private static final String QUARANTINE_SUFFIX = ".quarantine";
+    
+    // Truncate the file once everything is committed and it grew past this size
+    private static final long COMPACT_THRESHOLD_BYTES = 1024 * 1024;
+    
+    private final Path file;
+    private FileChannel channel;
+    private final Map<String, String> pendingRecords = new LinkedHashMap<>();
+    private String lastInvoiceNo;
+    
+    public InvoiceJournal(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file,
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        loadPendingRecords();
+    }
+    
+    /**
+     * Durably record an invoice. Returns only after the data reached the disk.
+     */
+    public synchronized void append(Invoice invoice) throws IOException {
+        String record = encode(invoice);
+        writeLine(record);
+        pendingRecords.put(invoice.getInvoiceNo(), record);
+        lastInvoiceNo = invoice.getInvoiceNo();
+    }
+    
+    /**
+     * Mark an invoice as stored in the main database
+     */
+    public void markCommitted(String invoiceNo) throws IOException {
+        markCommitted(List.of(invoiceNo));
+    }
+    
+    /**
+     * Mark a batch of invoices as stored, with a single write and flush
+     */
+    public synchronized void markCommitted(Collection<String> invoiceNos) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (String invoiceNo : invoiceNos) {
+            if (pendingRecords.remove(invoiceNo) != null) {
+                if (lines.length() > 0) {
+                    lines.append('\n');
+                }
+                lines.append(COMMITTED).append('\t').append(escape(invoiceNo));
+            }
+        }
+        if (lines.length() == 0) {
+            return;
+        }
+        writeLine(lines.toString());
+        
+        if (pendingRecords.isEmpty() && channel.size() > COMPACT_THRESHOLD_BYTES) {
+            compact();
+        }
+    }
+    
+    public synchronized int getPendingCount() {
+        return pendingRecords.size();
+    }
+    
+    /**
+     * Numbers of the invoices not yet marked committed
+     */
+    public synchronized Set<String> getPendingInvoiceNos() {
+        return new LinkedHashSet<>(pendingRecords.keySet());
+    }
+    
+    /**
+     * Invoice number of the most recent invoice ever journaled on this terminal
+     */
+    public synchronized String getLastInvoiceNo() {
+        return lastInvoiceNo;
+    }
+    
+    /**
+     * Rebuild the invoices that were journaled but never committed. Customer
+     * and products carry the ID and name that were journaled.
+     * A record that cannot be read is moved to the quarantine file and
+     * skipped, so it does not hold up the others.
+     */
+    public synchronized List<Invoice> readPending() {
+        List<Invoice> invoices = new ArrayList<>();
+        Iterator<Map.Entry<String, String>> it = pendingRecords.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            try {
+                invoices.add(decode(entry.getValue()));
+            } catch (NumberFormatException | DateTimeParseException | IndexOutOfBoundsException ex) {
+                ex.printStackTrace();
+                try {
+                    quarantine(entry.getKey(), entry.getValue());
+                    it.remove();
+                } catch (IOException writeEx) {
+                    // Stays pending; skipped again on the next start
+                    writeEx.printStackTrace();
+                }
+            }
+        }
+        return invoices;
+    }
+    
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+    
+    /**
+     * Replace the journal with one holding only the last invoice number.
+     * The new file is written and forced beside the journal, then moved over
+     * it, so a crash leaves either the old journal or the complete new one.
+     */
+    private void compact() {
+        List<String> lines = new ArrayList<>();
+        lines.add(VERSION_LINE);
+        if (lastInvoiceNo != null) {
+            lines.add(LAST_INVOICE + "\t" + escape(lastInvoiceNo));
+        }
+        try {
+            replaceWith(lines);
+        } catch (IOException ex) {
+            // Keep the old journal; it is only bigger than it needs to be
+            ex.printStackTrace();
+        }
+    }
+    
+    /**
+     * Replace the journal with these lines. The new file is written and
+     * forced beside the journal, then moved over it, so a crash leaves
+     * either the old journal or the complete new one.
+     */
+    private void replaceWith(List<String> lines) throws IOException {
+        Path replacement = file.resolveSibling(file.getFileName() + ".compact");
+        try (FileChannel out = FileChannel.open(replacement,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            StringBuilder content = new StringBuilder();
+            for (String line : lines) {
+                content.append(line).append('\n');
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(true);
+        }
+        
+        // Closed first: an open file cannot be replaced on every platform
+        channel.close();
+        try {
+            Files.move(replacement, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(replacement);
+            throw ex;
+        } finally {
+            channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+    
+    /**
+     * Copy a record to the quarantine file, then mark it as handled here
+     */
+    private void quarantine(String invoiceNo, String record) throws IOException {
+        Path quarantineFile = file.resolveSibling(file.getFileName() + QUARANTINE_SUFFIX);
+        try (FileChannel out = FileChannel.open(quarantineFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer buffer = ByteBuffer.wrap((record + "\n").getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+            out.force(false);
+        }
+        writeLine(QUARANTINED + "\t" + escape(invoiceNo));
+    }
+    
+    private void writeLine(String line) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+    
+    private void loadPendingRecords() throws IOException {
+        if (channel.size() == 0) {
+            writeLine(VERSION_LINE);
+            return;
+        }
+        
+        int version = 1;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            boolean first = true;
+            while ((line = reader.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab < 0) {
+                    continue; // torn write at the end of the file
+                }
+                String type = line.substring(0, tab);
+                String[] fields = line.split("\t", -1);
+                if (first && VERSION.equals(type)) {
+                    version = Integer.parseInt(fields[1]);
+                } else if (PENDING.equals(type) && isComplete(fields, version)) {
+                    lastInvoiceNo = unescape(fields[1]);
+                    pendingRecords.put(lastInvoiceNo, line);
+                } else if (LAST_INVOICE.equals(type) && fields.length > 1) {
+                    lastInvoiceNo = unescape(fields[1]);
+                } else if ((COMMITTED.equals(type) || QUARANTINED.equals(type)) && fields.length > 1) {
+                    pendingRecords.remove(unescape(fields[1]));
+                }
+                first = false;
+            }
+        }
+        
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Invoice journal " + file + " was written by a newer version (format " + version + ")");
+        }
+        if (version < FORMAT_VERSION) {
+            convert(version);
+            return;
+        }
+        
+        // Terminate a torn last line so the next record starts on its own line
+        if (channel.size() > 0) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            channel.read(last, channel.size() - 1);
+            if (last.get(0) != '\n') {
+                writeLine("");
+            }
+        }
+    }
+    
+    /**
+     * Rewrite an older journal in the current format; everything already
+     * committed is dropped
+     */
+    private void convert(int version) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(VERSION_LINE);
+        if (lastInvoiceNo != null) {
+            lines.add(LAST_INVOICE + "\t" + escape(lastInvoiceNo));
+        }
+        for (Map.Entry<String, String> entry : pendingRecords.entrySet()) {
+            String record = upgrade(entry.getValue().split("\t", -1), version);
+            entry.setValue(record);
+            lines.add(record);
+        }
+        replaceWith(lines);
+    }
+    
+    /**
+     * Pending record of format 1 or 2 in the current format: amounts of
+     * format 1 become minor units, the names are left empty
+     */
+    private static String upgrade(String[] f, int version) {
+        List<String> fields = new ArrayList<>(f.length + f.length / 4 + 1);
+        for (int i = 0; i < 14; i++) {
+            // Invoice amounts
+            fields.add(version < 2 && i >= 4 && i <= 9 ? minorUnits(f[i]) : f[i]);
+            if (i == 2) {
+                fields.add(NULL_FIELD);
+            }
+        }
+        for (int i = 14; i + 3 < f.length; i += 4) {
+            fields.add(f[i]);
+            fields.add(NULL_FIELD);
+            fields.add(f[i + 1]);
+            fields.add(version < 2 ? minorUnits(f[i + 2]) : f[i + 2]);
+            fields.add(version < 2 ? minorUnits(f[i + 3]) : f[i + 3]);
+        }
+        return String.join("\t", fields);
+    }
+    
+    /**
+     * Decimal amount of a format 1 record in minor units; left as it is if
+     * it is not a number, so the record is quarantined when read
+     */
+    private static String minorUnits(String raw) {
+        if (NULL_FIELD.equals(raw)) {
+            return raw;
+        }
+        try {
+            return Long.toString(Money.ofDecimal(new BigDecimal(raw)));
+        } catch (NumberFormatException | ArithmeticException ex) {
+            return raw;
+        }
+    }
+    
+    private static boolean isComplete(String[] fields, int version) {
+        // Format 3 added the customer name and a name per item
+        int headerFields = version < 3 ? 14 : 15;
+        int itemFields = version < 3 ? 4 : 5;
+        if (fields.length < headerFields) {
+            return false;
+        }
+        try {
+            return fields.length == headerFields + itemFields * Integer.parseInt(fields[headerFields - 1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+    
+    private String encode(Invoice invoice) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(PENDING);
+        appendField(sb, invoice.getInvoiceNo());
+        appendField(sb, invoice.getCustomer() != null ? invoice.getCustomer().getId() : null);
+        appendField(sb, invoice.getCustomer() != null ? invoice.getCustomer().getName() : null);
+        appendField(sb, invoice.getInvoiceDate() != null ? invoice.getInvoiceDate().toString() : null);
+        appendField(sb, invoice.getTotalAmount());
+        appendField(sb, invoice.getPaidAmount());
+        appendField(sb, invoice.getDueAmount());
+        appendField(sb, invoice.getShippingCost());
+        appendField(sb, invoice.getTaxAmount());
+        appendField(sb, invoice.getDiscountAmount());
+        appendField(sb, invoice.getPaymentType());
+        appendField(sb, invoice.getPaymentReference());
+        appendField(sb, invoice.getNotes());
+        
+        List<InvoiceItem> items = invoice.getItems() != null ? invoice.getItems() : List.of();
+        appendField(sb, String.valueOf(items.size()));
+        for (InvoiceItem item : items) {
+            appendField(sb, item.getProduct() != null ? item.getProduct().getId() : null);
+            appendField(sb, item.getProduct() != null ? item.getProduct().getName() : null);
+            appendField(sb, String.valueOf(item.getQuantity()));
+            appendField(sb, item.getUnitPrice());
+            appendField(sb, item.getTotalPrice());
+        }
+        return sb.toString();
+    }
+    
+    private Invoice decode(String record) {
+        String[] f = record.split("\t", -1);
+        int i = 1;
+        
+        Invoice invoice = new Invoice();
+        invoice.setInvoiceNo(field(f[i++]));
+        String customerId = field(f[i++]);
+        String customerName = field(f[i++]);
+        if (customerId != null) {
+            Customer customer = new Customer();
+            customer.setId(customerId);
+            customer.setName(customerName);
+            invoice.setCustomer(customer);
+        }
+        String date = field(f[i++]);
+        invoice.setInvoiceDate(date != null ? LocalDate.parse(date) : null);
+        invoice.setTotalAmount(amount(f[i++]));
+        invoice.setPaidAmount(amount(f[i++]));
+        invoice.setDueAmount(amount(f[i++]));
+        invoice.setShippingCost(amount(f[i++]));
+        invoice.setTaxAmount(amount(f[i++]));
+        invoice.setDiscountAmount(amount(f[i++]));
+        invoice.setPaymentType(field(f[i++]));
+        invoice.setPaymentReference(field(f[i++]));
+        invoice.setNotes(field(f[i++]));
+        
+        int itemCount = Integer.parseInt(f[i++]);
+        List<InvoiceItem> items = new ArrayList<>(itemCount);
+        for (int n = 0; n < itemCount; n++) {
+            InvoiceItem item = new InvoiceItem();
+            String productId = field(f[i++]);
+            String productName = field(f[i++]);
+            if (productId != null) {
+                Product product = new Product();
+                product.setId(productId);
+                product.setName(productName);
+                item.setProduct(product);
+            }
+            item.setQuantity(Integer.parseInt(f[i++]));
+            item.setUnitPrice(amount(f[i++]));
+            item.setTotalPrice(amount(f[i++]));
+            items.add(item);
+        }
+        invoice.setItems(items);
+        return invoice;
+    }
+    
+    private static void appendField(StringBuilder sb, BigDecimal value) {
+        if (value == null) {
+            sb.append('\t').append(NULL_FIELD);
+        } else {
+            sb.append('\t').append(Money.ofDecimal(value));
+        }
+    }
+    
+    private static void appendField(StringBuilder sb, String value) {
+        sb.append('\t');
+        if (value == null) {
+            sb.append(NULL_FIELD);
+        } else {
+            sb.append(escape(value));
+        }
+    }
+    
+    private static String field(String raw) {
+        return NULL_FIELD.equals(raw) ? null : unescape(raw);
+    }
+    
+    private static BigDecimal amount(String raw) {
+        return NULL_FIELD.equals(raw) ? null : Money.toDecimal(Long.parseLong(raw));
+    }
+    
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\t': sb.append("\\t"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+    
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char next = value.charAt(++i);
+                switch (next) {
+                    case 't': sb.append('\t'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    default: sb.append(next);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,230 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.controller.SalesController;
+import com.inventory.service.InvoiceNumberLeaseStore.Range;
+import com.inventory.util.AppPaths;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * InvoiceNumberAllocator - Issues invoice numbers without a database hit per sale
+ * Features:
+ * - Leases blocks of numbers from the shared InvoiceNumberLeaseStore
+ * - Numbers inside a block are handed out with an atomic increment
+ * - Consecutive, gap-free numbers within a block
+ * - After a crash the unused rest of the block is picked up again,
+ *   starting after the last invoice found in the local invoice journal
+ * - On a clean shutdown the unused rest is returned for other terminals
+ */
+public class InvoiceNumberAllocator {
+    
+    private static final String LEASE_FILE = "invoice-number-leases.properties";
+    private static final String TERMINAL_ID_PROPERTY = "inventory.terminalId";
+    private static final int DEFAULT_BLOCK_SIZE = 100;
+    
+    private static final String PREFIX = "INV-";
+    
+    private static volatile InvoiceNumberAllocator instance;
+    
+    /**
+     * Numbers [from, to) leased to this terminal; next is the next one to issue
+     */
+    private static final class Lease {
+        private final AtomicLong next;
+        private final long to;
+        
+        Lease(long from, long to) {
+            this.next = new AtomicLong(from);
+            this.to = to;
+        }
+    }
+    
+    private final InvoiceNumberLeaseStore leaseStore;
+    private final String terminalId;
+    private final int blockSize;
+    private volatile Lease lease;
+    
+    public InvoiceNumberAllocator(InvoiceNumberLeaseStore leaseStore, String terminalId, int blockSize) {
+        this.leaseStore = leaseStore;
+        this.terminalId = terminalId;
+        this.blockSize = blockSize;
+    }
+    
+    /**
+     * Get the allocator for this terminal. The first call recovers the block
+     * left over from a crash and registers a shutdown hook that gives unused
+     * numbers back.
+     */
+    public static InvoiceNumberAllocator getInstance() {
+        InvoiceNumberAllocator allocator = instance;
+        if (allocator == null) {
+            synchronized (InvoiceNumberAllocator.class) {
+                allocator = instance;
+                if (allocator == null) {
+                    try {
+                        SalesController salesController = new SalesController();
+                        InvoiceNumberLeaseStore store = new InvoiceNumberLeaseStore(
+                            AppPaths.getSharedDirectory().resolve(LEASE_FILE),
+                            () -> parseSequence(salesController.generateInvoiceNumber()));
+                        allocator = new InvoiceNumberAllocator(store, resolveTerminalId(), DEFAULT_BLOCK_SIZE);
+                        allocator.recover(InvoiceCommitPipeline.getInstance().getLastInvoiceNo());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException("Cannot open invoice number leases", ex);
+                    }
+                    Runtime.getRuntime().addShutdownHook(new Thread(allocator::releaseQuietly, "invoice-number-release"));
+                    instance = allocator;
+                }
+            }
+        }
+        return allocator;
+    }
+    
+    /**
+     * Next invoice number, e.g. INV-000123
+     */
+    public String nextInvoiceNumber() {
+        return format(next());
+    }
+    
+    /**
+     * Take back a number from nextInvoiceNumber() that was not used after all,
+     * e.g. the invoice could not be journaled. Only the last number issued
+     * can be taken back; for any other the gap stays.
+     */
+    public void giveBack(String invoiceNo) {
+        Lease current = lease;
+        long number = parseSequence(invoiceNo);
+        if (current != null && number < current.to) {
+            current.next.compareAndSet(number + 1, number);
+        }
+    }
+    
+    /**
+     * Number the next call to nextInvoiceNumber() will most likely issue,
+     * for display; does not use it up. Null if a new block must be leased first.
+     */
+    public String peekNextInvoiceNumber() {
+        Lease current = lease;
+        if (current == null) {
+            return null;
+        }
+        long number = current.next.get();
+        return number < current.to ? format(number) : null;
+    }
+    
+    public long next() {
+        while (true) {
+            Lease current = lease;
+            if (current != null) {
+                long number = current.next.getAndIncrement();
+                if (number < current.to) {
+                    return number;
+                }
+            }
+            renewLease(current);
+        }
+    }
+    
+    /**
+     * Resume the block this terminal held when it stopped without releasing it
+     *
+     * @param lastIssuedInvoiceNo last invoice number this terminal is known to have used
+     */
+    public void recover(String lastIssuedInvoiceNo) throws IOException {
+        Range stale = leaseStore.findLease(terminalId);
+        if (stale == null) {
+            return;
+        }
+        
+        long from = stale.getFrom();
+        long lastUsed = parseSequence(lastIssuedInvoiceNo);
+        if (lastUsed >= stale.getFrom() && lastUsed < stale.getTo()) {
+            from = lastUsed + 1;
+        } else if (lastUsed >= stale.getTo()) {
+            from = stale.getTo();
+        }
+        
+        if (from < stale.getTo()) {
+            // Keep using the rest of the old block
+            Range rest = new Range(from, stale.getTo());
+            leaseStore.register(terminalId, rest);
+            lease = new Lease(rest.getFrom(), rest.getTo());
+        } else {
+            leaseStore.release(terminalId, null);
+        }
+    }
+    
+    /**
+     * Return the unused part of the current block to the shared free list
+     */
+    public synchronized void release() throws IOException {
+        Lease current = lease;
+        lease = null;
+        if (current != null) {
+            long from = Math.min(current.next.get(), current.to);
+            leaseStore.release(terminalId, new Range(from, current.to));
+        }
+    }
+    
+    private void releaseQuietly() {
+        try {
+            release();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    private synchronized void renewLease(Lease exhausted) {
+        if (lease != exhausted) {
+            return; // another thread already renewed it
+        }
+        try {
+            Range range = leaseStore.acquire(terminalId, blockSize);
+            lease = new Lease(range.getFrom(), range.getTo());
+        } catch (IOException ex) {
+            throw new UncheckedIOException("Cannot lease invoice numbers", ex);
+        }
+    }
+    
+    public static String format(long number) {
+        return PREFIX + String.format("%06d", number);
+    }
+    
+    /**
+     * Numeric part of an invoice number (trailing digits), 0 if there is none
+     */
+    public static long parseSequence(String invoiceNo) {
+        if (invoiceNo == null) {
+            return 0;
+        }
+        int end = invoiceNo.length();
+        int start = end;
+        while (start > 0 && Character.isDigit(invoiceNo.charAt(start - 1))) {
+            start--;
+        }
+        if (start == end || end - start > 18) {
+            return 0;
+        }
+        return Long.parseLong(invoiceNo.substring(start, end));
+    }
+    
+    /**
+     * ID of this terminal, -Dinventory.terminalId=... or the host name
+     */
+    static String resolveTerminalId() {
+        String configured = System.getProperty(TERMINAL_ID_PROPERTY);
+        if (configured != null && !configured.trim().isEmpty()) {
+            return configured.trim();
+        }
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException ex) {
+            return "terminal-1";
+        }
+    }
+}
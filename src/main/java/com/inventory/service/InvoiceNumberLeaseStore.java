@@ -0,0 +1,176 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+
+/**
+ * InvoiceNumberLeaseStore - Hands out blocks of invoice numbers to terminals
+ *
+ * State lives in a small properties file in the shared directory and is only
+ * touched under an exclusive file lock, once per block:
+ * - next                 first number never handed out
+ * - lease.[terminalId]   block currently held by a terminal (from-to, to exclusive)
+ * - free                 unused blocks given back, reused before new numbers
+ */
+public class InvoiceNumberLeaseStore {
+    
+    private static final String KEY_NEXT = "next";
+    private static final String KEY_FREE = "free";
+    private static final String KEY_LEASE_PREFIX = "lease.";
+    
+    /**
+     * Half-open range [from, to) of invoice numbers
+     */
+    public static final class Range {
+        private final long from;
+        private final long to;
+        
+        public Range(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+        
+        public long getFrom() {
+            return from;
+        }
+        
+        public long getTo() {
+            return to;
+        }
+        
+        public boolean isEmpty() {
+            return from >= to;
+        }
+        
+        @Override
+        public String toString() {
+            return from + "-" + to;
+        }
+        
+        static Range parse(String text) {
+            int dash = text.indexOf('-');
+            return new Range(Long.parseLong(text.substring(0, dash).trim()),
+                             Long.parseLong(text.substring(dash + 1).trim()));
+        }
+    }
+    
+    private final SharedPropertiesFile file;
+    private final LongSupplier initialNumber;
+    
+    /**
+     * @param file          lease file, normally in AppPaths.getSharedDirectory()
+     * @param initialNumber first number to use when the lease file does not exist yet
+     */
+    public InvoiceNumberLeaseStore(Path file, LongSupplier initialNumber) {
+        this.file = new SharedPropertiesFile(file,
+            "Invoice number leases - do not edit while terminals are running");
+        this.initialNumber = initialNumber;
+    }
+    
+    /**
+     * Lease a block of up to blockSize numbers to a terminal
+     */
+    public Range acquire(String terminalId, int blockSize) throws IOException {
+        return update(props -> {
+            List<Range> free = readFree(props);
+            Range lease;
+            if (!free.isEmpty()) {
+                Range first = free.remove(0);
+                lease = new Range(first.getFrom(), Math.min(first.getTo(), first.getFrom() + blockSize));
+                if (lease.getTo() < first.getTo()) {
+                    free.add(0, new Range(lease.getTo(), first.getTo()));
+                }
+                writeFree(props, free);
+            } else {
+                long next = Long.parseLong(props.getProperty(KEY_NEXT));
+                lease = new Range(next, next + blockSize);
+                props.setProperty(KEY_NEXT, String.valueOf(lease.getTo()));
+            }
+            props.setProperty(KEY_LEASE_PREFIX + terminalId, lease.toString());
+            return lease;
+        });
+    }
+    
+    /**
+     * Block a terminal still held when it last stopped (null if it shut down cleanly)
+     */
+    public Range findLease(String terminalId) throws IOException {
+        return update(props -> {
+            String lease = props.getProperty(KEY_LEASE_PREFIX + terminalId);
+            return lease != null ? Range.parse(lease) : null;
+        });
+    }
+    
+    /**
+     * Record the block a terminal is using, replacing any previous one
+     */
+    public void register(String terminalId, Range lease) throws IOException {
+        update(props -> {
+            props.setProperty(KEY_LEASE_PREFIX + terminalId, lease.toString());
+            return null;
+        });
+    }
+    
+    /**
+     * End a terminal's lease and return its unused numbers to the free list
+     */
+    public void release(String terminalId, Range unused) throws IOException {
+        update(props -> {
+            props.remove(KEY_LEASE_PREFIX + terminalId);
+            if (unused != null && !unused.isEmpty()) {
+                List<Range> free = readFree(props);
+                free.add(unused);
+                free.sort((a, b) -> Long.compare(a.getFrom(), b.getFrom()));
+                writeFree(props, free);
+            }
+            return null;
+        });
+    }
+    
+    private <T> T update(SharedPropertiesFile.Update<T> update) throws IOException {
+        return file.update(props -> {
+            if (props.getProperty(KEY_NEXT) == null) {
+                // Never below a block that is still leased or free, should the file have lost its counter
+                long next = Math.max(1, initialNumber.getAsLong());
+                for (String key : props.stringPropertyNames()) {
+                    if (key.startsWith(KEY_LEASE_PREFIX)) {
+                        next = Math.max(next, Range.parse(props.getProperty(key)).getTo());
+                    }
+                }
+                for (Range range : readFree(props)) {
+                    next = Math.max(next, range.getTo());
+                }
+                props.setProperty(KEY_NEXT, String.valueOf(next));
+            }
+            return update.apply(props);
+        });
+    }
+    
+    private static List<Range> readFree(Properties props) {
+        List<Range> free = new ArrayList<>();
+        String value = props.getProperty(KEY_FREE, "").trim();
+        if (!value.isEmpty()) {
+            for (String part : value.split(",")) {
+                free.add(Range.parse(part));
+            }
+        }
+        return free;
+    }
+    
+    private static void writeFree(Properties props, List<Range> free) {
+        StringBuilder sb = new StringBuilder();
+        for (Range range : free) {
+            if (sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(range);
+        }
+        props.setProperty(KEY_FREE, sb.toString());
+    }
+}
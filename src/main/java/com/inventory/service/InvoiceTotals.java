@@ -0,0 +1,187 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.util.Money;
+
+import java.math.RoundingMode;
+
+/**
+ * InvoiceTotals - Running totals of the invoice being entered
+ * Features:
+ * - Sub total kept up to date as lines are added and removed
+ * - Tax and discount as percentage of the sub total or fixed amount
+ * - Only the components affected by a change are recalculated
+ *   (typing in the paid field only recomputes the due amount)
+ * - Amounts in minor units (see Money), rates in hundredths of a percent
+ */
+public class InvoiceTotals {
+    
+    private final RoundingMode taxRounding;
+    private final RoundingMode discountRounding;
+    
+    // Inputs
+    private long subTotal;
+    private int lineCount;
+    private long shippingCost;
+    private long taxInput;
+    private boolean taxPercent = true;
+    private long discountInput;
+    private boolean discountPercent = true;
+    private long paidAmount;
+    
+    // Derived values
+    private long taxAmount;
+    private long discountAmount;
+    private long grandTotal;
+    private long dueAmount;
+    
+    public InvoiceTotals() {
+        this(RoundingMode.HALF_UP, RoundingMode.HALF_UP);
+    }
+    
+    public InvoiceTotals(RoundingMode taxRounding, RoundingMode discountRounding) {
+        this.taxRounding = taxRounding;
+        this.discountRounding = discountRounding;
+    }
+    
+    public void addLine(long lineTotal) {
+        subTotal += lineTotal;
+        lineCount++;
+        subTotalChanged();
+    }
+    
+    public void removeLine(long lineTotal) {
+        subTotal -= lineTotal;
+        lineCount--;
+        subTotalChanged();
+    }
+    
+    public void clearLines() {
+        if (lineCount == 0 && subTotal == 0) {
+            return;
+        }
+        subTotal = 0;
+        lineCount = 0;
+        subTotalChanged();
+    }
+    
+    /**
+     * Clear lines and all entered amounts for a new invoice
+     */
+    public void reset() {
+        subTotal = 0;
+        lineCount = 0;
+        shippingCost = 0;
+        taxInput = 0;
+        discountInput = 0;
+        paidAmount = 0;
+        taxAmount = 0;
+        discountAmount = 0;
+        grandTotal = 0;
+        dueAmount = 0;
+    }
+    
+    public void setShippingCost(long value) {
+        if (value == shippingCost) {
+            return;
+        }
+        shippingCost = value;
+        updateGrandTotal();
+    }
+    
+    /**
+     * @param value   tax rate (750 = 7.5%), or fixed tax amount
+     * @param percent true if value is a percentage of the sub total
+     */
+    public void setTax(long value, boolean percent) {
+        if (value == taxInput && percent == taxPercent) {
+            return;
+        }
+        taxInput = value;
+        taxPercent = percent;
+        updateTax();
+        updateGrandTotal();
+    }
+    
+    /**
+     * @param value   discount rate (750 = 7.5%), or fixed discount amount
+     * @param percent true if value is a percentage of the sub total
+     */
+    public void setDiscount(long value, boolean percent) {
+        if (value == discountInput && percent == discountPercent) {
+            return;
+        }
+        discountInput = value;
+        discountPercent = percent;
+        updateDiscount();
+        updateGrandTotal();
+    }
+    
+    public void setPaidAmount(long value) {
+        if (value == paidAmount) {
+            return;
+        }
+        paidAmount = value;
+        updateDue();
+    }
+    
+    private void subTotalChanged() {
+        if (taxPercent) {
+            updateTax();
+        }
+        if (discountPercent) {
+            updateDiscount();
+        }
+        updateGrandTotal();
+    }
+    
+    private void updateTax() {
+        taxAmount = taxPercent ? Money.percentOf(subTotal, taxInput, taxRounding) : taxInput;
+    }
+    
+    private void updateDiscount() {
+        discountAmount = discountPercent ? Money.percentOf(subTotal, discountInput, discountRounding) : discountInput;
+    }
+    
+    private void updateGrandTotal() {
+        grandTotal = subTotal + shippingCost + taxAmount - discountAmount;
+        updateDue();
+    }
+    
+    private void updateDue() {
+        dueAmount = grandTotal - paidAmount;
+    }
+    
+    public int getLineCount() {
+        return lineCount;
+    }
+    
+    public long getSubTotal() {
+        return subTotal;
+    }
+    
+    public long getShippingCost() {
+        return shippingCost;
+    }
+    
+    public long getTaxAmount() {
+        return taxAmount;
+    }
+    
+    public long getDiscountAmount() {
+        return discountAmount;
+    }
+    
+    public long getGrandTotal() {
+        return grandTotal;
+    }
+    
+    public long getPaidAmount() {
+        return paidAmount;
+    }
+    
+    public long getDueAmount() {
+        return dueAmount;
+    }
+}
@@ -0,0 +1,253 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Product;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ProductCatalog - Shared in-memory product index for the sales screens
+ * Features:
+ * - Loads the product list once per process
+ * - Lookup by product ID, barcode and normalized name without a database hit
+ * - Products that share a name are all kept; findByName picks the one
+ *   with the lowest product ID, findAllByName returns every one
+ * - Incremental refresh of single products after an edit or a sale
+ * - Key version so dependent indexes know when to rebuild; stock and
+ *   price updates (e.g. after every sale) leave it alone
+ *
+ * Reads never lock; writers are serialized so the three key maps always
+ * agree with each other.
+ */
+public class ProductCatalog {
+    
+    private static final Comparator<Product> BY_ID = Comparator.comparing(Product::getId);
+    
+    private static volatile ProductCatalog instance;
+    
+    private final ProductService productService;
+    
+    private final Map<String, Product> productsById = new ConcurrentHashMap<>();
+    private final Map<String, Product> productsByBarcode = new ConcurrentHashMap<>();
+    // Normalized name -> products with that name, by ID; lists are never changed once published
+    private final Map<String, List<Product>> productsByName = new ConcurrentHashMap<>();
+    
+    private final AtomicLong version = new AtomicLong();
+    private volatile boolean loaded;
+    
+    public ProductCatalog(ProductService productService) {
+        this.productService = productService;
+    }
+    
+    /**
+     * Get the catalog shared by all panels
+     */
+    public static ProductCatalog getInstance() {
+        ProductCatalog catalog = instance;
+        if (catalog == null) {
+            synchronized (ProductCatalog.class) {
+                catalog = instance;
+                if (catalog == null) {
+                    catalog = new ProductCatalog(new ProductService());
+                    instance = catalog;
+                }
+            }
+        }
+        return catalog;
+    }
+    
+    /**
+     * Load all products from the database the first time the catalog is used
+     */
+    public void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        
+        synchronized (this) {
+            if (!loaded) {
+                for (Product product : productService.getAllProducts()) {
+                    index(product);
+                }
+                loaded = true;
+                version.incrementAndGet();
+            }
+        }
+    }
+    
+    public Product findById(String productId) {
+        if (productId == null) {
+            return null;
+        }
+        ensureLoaded();
+        return productsById.get(productId.trim());
+    }
+    
+    public Product findByBarcode(String barcode) {
+        if (barcode == null) {
+            return null;
+        }
+        ensureLoaded();
+        return productsByBarcode.get(barcode.trim());
+    }
+    
+    /**
+     * Product with this name; if several products share the name, the one
+     * with the lowest product ID
+     */
+    public Product findByName(String name) {
+        List<Product> products = findAllByName(name);
+        return products.isEmpty() ? null : products.get(0);
+    }
+    
+    /**
+     * All products with this name, by product ID
+     */
+    public List<Product> findAllByName(String name) {
+        if (name == null) {
+            return Collections.emptyList();
+        }
+        ensureLoaded();
+        return productsByName.getOrDefault(normalizeName(name), Collections.emptyList());
+    }
+    
+    /**
+     * Resolve a code typed or scanned at the till - product ID first, then barcode
+     */
+    public Product findByCode(String code) {
+        Product product = findById(code);
+        return product != null ? product : findByBarcode(code);
+    }
+    
+    /**
+     * Snapshot of all products sorted by name
+     */
+    public List<Product> getProducts() {
+        ensureLoaded();
+        List<Product> products = new ArrayList<>(productsById.values());
+        products.sort(Comparator.comparing(Product::getName, String.CASE_INSENSITIVE_ORDER));
+        return products;
+    }
+    
+    public int size() {
+        ensureLoaded();
+        return productsById.size();
+    }
+    
+    /**
+     * Incremented on load, insert and delete, and when an update changes a
+     * product's name or barcode
+     */
+    public long getVersion() {
+        return version.get();
+    }
+    
+    /**
+     * Insert or replace a product (call after a product is saved)
+     */
+    public synchronized void put(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        ensureLoaded();
+        Product old = index(product);
+        if (old == null || !Objects.equals(old.getName(), product.getName())
+                || !Objects.equals(old.getBarcode(), product.getBarcode())) {
+            version.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Drop a product from the catalog (call after a product is deleted)
+     */
+    public synchronized void remove(String productId) {
+        if (productId == null) {
+            return;
+        }
+        ensureLoaded();
+        Product old = productsById.remove(productId);
+        if (old != null) {
+            unindexKeys(old);
+            version.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Re-read a single product from the database, e.g. after its stock changed
+     */
+    public Product refresh(String productId) {
+        Product product = productService.getProductById(productId);
+        if (product != null) {
+            put(product);
+        } else {
+            remove(productId);
+        }
+        return product;
+    }
+    
+    /**
+     * @return the product previously stored under the same ID, if any
+     */
+    private Product index(Product product) {
+        Product old = productsById.put(product.getId(), product);
+        if (old != null) {
+            unindexKeys(old);
+        }
+        
+        if (product.getBarcode() != null && !product.getBarcode().trim().isEmpty()) {
+            productsByBarcode.put(product.getBarcode().trim(), product);
+        }
+        if (product.getName() != null) {
+            productsByName.compute(normalizeName(product.getName()), (name, products) -> {
+                List<Product> updated = products != null ? new ArrayList<>(products) : new ArrayList<>(1);
+                updated.add(product);
+                updated.sort(BY_ID);
+                return Collections.unmodifiableList(updated);
+            });
+        }
+        return old;
+    }
+    
+    private void unindexKeys(Product old) {
+        if (old.getBarcode() != null) {
+            productsByBarcode.remove(old.getBarcode().trim(), old);
+        }
+        if (old.getName() != null) {
+            productsByName.computeIfPresent(normalizeName(old.getName()), (name, products) -> {
+                List<Product> updated = new ArrayList<>(products);
+                updated.remove(old);
+                return updated.isEmpty() ? null : Collections.unmodifiableList(updated);
+            });
+        }
+    }
+    
+    /**
+     * Lower-case the name and collapse runs of whitespace
+     */
+    public static String normalizeName(String name) {
+        StringBuilder sb = new StringBuilder(name.length());
+        boolean pendingSpace = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = sb.length() > 0;
+            } else {
+                if (pendingSpace) {
+                    sb.append(' ');
+                    pendingSpace = false;
+                }
+                sb.append(c);
+            }
+        }
+        return sb.toString().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,164 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Product;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ProductSearchIndex - Type-ahead lookup over the product catalog
+ * Features:
+ * - Prefix search over product names, barcodes and IDs
+ * - Sorted key array with binary search; a lookup costs
+ *   O(log n + k) regardless of catalog size
+ * - Exact ID / barcode hit is always the first result
+ * - Rebuilt lazily when the ProductCatalog version changes, i.e. only
+ *   when products come or go or their name or barcode changes
+ * - Keys point to product IDs; results are read from the catalog, so
+ *   stock and price are current without a rebuild
+ */
+public class ProductSearchIndex {
+    
+    /**
+     * Immutable sorted keys; productIds[i] belongs to keys[i]
+     */
+    private static final class Snapshot {
+        private final long version;
+        private final String[] keys;
+        private final String[] productIds;
+        
+        Snapshot(long version, String[] keys, String[] productIds) {
+            this.version = version;
+            this.keys = keys;
+            this.productIds = productIds;
+        }
+    }
+    
+    private final ProductCatalog productCatalog;
+    private volatile Snapshot snapshot;
+    
+    public ProductSearchIndex(ProductCatalog productCatalog) {
+        this.productCatalog = productCatalog;
+    }
+    
+    /**
+     * Up to limit products whose name, barcode or ID starts with the query
+     * (case-insensitive), ordered by the matching key
+     */
+    public List<Product> search(String query, int limit) {
+        List<Product> results = new ArrayList<>(limit);
+        if (query == null || limit <= 0) {
+            return results;
+        }
+        String prefix = ProductCatalog.normalizeName(query);
+        if (prefix.isEmpty()) {
+            return results;
+        }
+        
+        Product exact = productCatalog.findByCode(query.trim());
+        if (exact != null) {
+            results.add(exact);
+        }
+        
+        Snapshot current = currentSnapshot();
+        String[] keys = current.keys;
+        for (int i = lowerBound(keys, prefix); i < keys.length && results.size() < limit; i++) {
+            if (!keys[i].startsWith(prefix)) {
+                break;
+            }
+            Product product = productCatalog.findById(current.productIds[i]);
+            if (product != null && !containsProduct(results, product)) {
+                results.add(product);
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * Build the index now instead of on the first search
+     */
+    public void prepare() {
+        currentSnapshot();
+    }
+    
+    private Snapshot currentSnapshot() {
+        Snapshot current = snapshot;
+        long version = productCatalog.getVersion();
+        if (current == null || current.version != version) {
+            current = build(version);
+            snapshot = current;
+        }
+        return current;
+    }
+    
+    private Snapshot build(long version) {
+        List<Product> products = productCatalog.getProducts();
+        List<Entry> entries = new ArrayList<>(products.size() * 3);
+        for (Product product : products) {
+            addEntry(entries, product.getName(), product);
+            addEntry(entries, product.getBarcode(), product);
+            addEntry(entries, product.getId(), product);
+        }
+        entries.sort(null);
+        
+        String[] keys = new String[entries.size()];
+        String[] owners = new String[entries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = entries.get(i).key;
+            owners[i] = entries.get(i).productId;
+        }
+        return new Snapshot(version, keys, owners);
+    }
+    
+    private static final class Entry implements Comparable<Entry> {
+        private final String key;
+        private final String productId;
+        
+        Entry(String key, String productId) {
+            this.key = key;
+            this.productId = productId;
+        }
+        
+        @Override
+        public int compareTo(Entry other) {
+            return key.compareTo(other.key);
+        }
+    }
+    
+    private static void addEntry(List<Entry> entries, String key, Product product) {
+        if (key != null) {
+            String normalized = ProductCatalog.normalizeName(key);
+            if (!normalized.isEmpty()) {
+                entries.add(new Entry(normalized, product.getId()));
+            }
+        }
+    }
+    
+    /**
+     * First index whose key is not less than prefix
+     */
+    private static int lowerBound(String[] keys, String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+    
+    private static boolean containsProduct(List<Product> products, Product product) {
+        for (Product p : products) {
+            if (p == product || (p.getId() != null && p.getId().equals(product.getId()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
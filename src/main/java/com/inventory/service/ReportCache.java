@@ -0,0 +1,274 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Customer;
+import com.inventory.model.Invoice;
+import com.inventory.service.CustomerRepository.CustomerChange;
+import com.inventory.service.CustomerRepository.CustomerChangeListener;
+import com.inventory.service.InvoiceCommitPipeline.CommitStatus;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Supplier;
+
+/**
+ * ReportCache - Recently generated reports, kept for repeat views and exports
+ * Features:
+ * - Keyed by report type, customer and date range
+ * - Holds at most MAX_ENTRIES reports; the least recently used is dropped
+ * - A report is dropped when a customer, invoice or return it is built
+ *   from is saved: only reports for that customer (or for all customers)
+ *   whose date range covers the saved record
+ * - Reports showing arrears are dropped when a balance in the
+ *   CustomerArrearsLedger moves, for that customer only
+ *
+ * Usage:
+ *   ReportDocument report = ReportCache.getInstance().getOrBuild(
+ *       new ReportCache.Key("ALL_CUSTOMER_FULL", customerName, null, null),
+ *       EnumSet.of(Source.CUSTOMERS, Source.ARREARS),
+ *       () -> ReportDocument.ofText(...));
+ */
+public class ReportCache {
+    
+    /**
+     * Data a report is built from
+     */
+    public enum Source {
+        CUSTOMERS,
+        INVOICES,
+        RETURNS,
+        // Customer balances, moved by saved invoices, payments and returns
+        ARREARS
+    }
+    
+    public static final class Key {
+        private final String reportType;
+        private final String customerKey;
+        private final LocalDate fromDate;
+        private final LocalDate toDate;
+        
+        /**
+         * @param customerName null for a report over all customers
+         * @param fromDate     null for no lower bound, or for reports without dates
+         * @param toDate       null for no upper bound, or for reports without dates
+         */
+        public Key(String reportType, String customerName, LocalDate fromDate, LocalDate toDate) {
+            this.reportType = reportType;
+            this.customerKey = customerName != null ? CustomerNameIndex.key(customerName) : null;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+        }
+        
+        /**
+         * Whether a record of this customer on this date can appear in the report;
+         * a null customer key or date matches anything
+         */
+        boolean covers(String otherCustomerKey, LocalDate date) {
+            if (customerKey != null && otherCustomerKey != null && !customerKey.equals(otherCustomerKey)) {
+                return false;
+            }
+            if (date == null) {
+                return true;
+            }
+            return (fromDate == null || !date.isBefore(fromDate)) && (toDate == null || !date.isAfter(toDate));
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return reportType.equals(other.reportType)
+                && Objects.equals(customerKey, other.customerKey)
+                && Objects.equals(fromDate, other.fromDate)
+                && Objects.equals(toDate, other.toDate);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(reportType, customerKey, fromDate, toDate);
+        }
+    }
+    
+    private static final class Entry {
+        final ReportDocument report;
+        final Set<Source> sources;
+        
+        Entry(ReportDocument report, Set<Source> sources) {
+            this.report = report;
+            this.sources = EnumSet.copyOf(sources);
+        }
+    }
+    
+    private static final int MAX_ENTRIES = 20;
+    
+    private static volatile ReportCache instance;
+    
+    private final Map<Key, Entry> entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+    
+    // Counts invalidations, so a report built while its data changed is not kept
+    private long generation;
+    
+    public static ReportCache getInstance() {
+        ReportCache cache = instance;
+        if (cache == null) {
+            synchronized (ReportCache.class) {
+                cache = instance;
+                if (cache == null) {
+                    cache = new ReportCache();
+                    ReportCache created = cache;
+                    CustomerRepository.getInstance().addChangeListener(new CustomerChangeListener() {
+                        @Override
+                        public void customerChanged(CustomerChange change) {
+                            created.customerChanged(change);
+                        }
+                        
+                        @Override
+                        public void customersChanged(List<CustomerChange> changes) {
+                            created.customersChanged(changes);
+                        }
+                    });
+                    InvoiceCommitPipeline.getInstance().addCommitListener(cache::commitStatusChanged);
+                    CustomerArrearsLedger.getInstance().addArrearsListener(cache::arrearsChanged);
+                    instance = cache;
+                }
+            }
+        }
+        return cache;
+    }
+    
+    /**
+     * The cached report for a key, or the one built now (and cached)
+     */
+    public ReportDocument getOrBuild(Key key, Set<Source> sources, Supplier<ReportDocument> builder) {
+        long buildGeneration;
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                return entry.report;
+            }
+            buildGeneration = generation;
+        }
+        
+        // Built outside the lock; reports can take a while
+        ReportDocument report = builder.get();
+        synchronized (this) {
+            if (generation == buildGeneration) {
+                entries.put(key, new Entry(report, sources));
+            }
+        }
+        return report;
+    }
+    
+    /**
+     * Call after a return was saved
+     */
+    public void returnSaved(String customerName, LocalDate returnDate) {
+        invalidate(Source.RETURNS, customerName, returnDate);
+    }
+    
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+    
+    private void customerChanged(CustomerChange change) {
+        Customer customer = change.getCustomer();
+        Customer previous = change.getPrevious();
+        if (customer == null && previous == null) {
+            // Name unknown; could be in any report
+            invalidate(Source.CUSTOMERS, null, null);
+            return;
+        }
+        if (customer != null) {
+            invalidate(Source.CUSTOMERS, customer.getName(), null);
+        }
+        // A rename also changes the reports under the old name
+        if (previous != null) {
+            invalidate(Source.CUSTOMERS, previous.getName(), null);
+        }
+    }
+    
+    /**
+     * Many customers at once, e.g. an import chunk: one pass over the cache
+     */
+    private void customersChanged(List<CustomerChange> changes) {
+        Set<String> customerKeys = new HashSet<>();
+        for (CustomerChange change : changes) {
+            if (change.getCustomer() == null && change.getPrevious() == null) {
+                invalidate(Source.CUSTOMERS, null, null);
+                return;
+            }
+            if (change.getCustomer() != null) {
+                customerKeys.add(CustomerNameIndex.key(change.getCustomer().getName()));
+            }
+            if (change.getPrevious() != null) {
+                customerKeys.add(CustomerNameIndex.key(change.getPrevious().getName()));
+            }
+        }
+        invalidateCustomers(customerKeys);
+    }
+    
+    /**
+     * Called after the ledger posted, so a report built from now on sees the balance
+     */
+    private void arrearsChanged(String customerId, long arrears) {
+        // Name unknown until the index is built; could be in any report then
+        invalidateKey(Source.ARREARS, CustomerNameIndex.getInstance().findNameKey(customerId), null);
+    }
+    
+    private void commitStatusChanged(Invoice invoice, CommitStatus status, String message) {
+        if (status == CommitStatus.COMMITTED) {
+            String customerName = invoice.getCustomer() != null ? invoice.getCustomer().getName() : null;
+            invalidate(Source.INVOICES, customerName, invoice.getInvoiceDate());
+        }
+    }
+    
+    /**
+     * Drop the customer reports for any of these customers or for all of them
+     */
+    private synchronized void invalidateCustomers(Set<String> customerKeys) {
+        generation++;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> entry = it.next();
+            String customerKey = entry.getKey().customerKey;
+            if (entry.getValue().sources.contains(Source.CUSTOMERS)
+                    && (customerKey == null || customerKeys.contains(customerKey))) {
+                it.remove();
+            }
+        }
+    }
+    
+    private void invalidate(Source source, String customerName, LocalDate date) {
+        invalidateKey(source, customerName != null ? CustomerNameIndex.key(customerName) : null, date);
+    }
+    
+    private synchronized void invalidateKey(Source source, String customerKey, LocalDate date) {
+        generation++;
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Key, Entry> entry = it.next();
+            if (entry.getValue().sources.contains(source) && entry.getKey().covers(customerKey, date)) {
+                it.remove();
+            }
+        }
+    }
+}
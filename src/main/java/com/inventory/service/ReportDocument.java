@@ -0,0 +1,77 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReportDocument - A text report rendered a page at a time
+ * Features:
+ * - Pages are rendered when asked for, straight into any Appendable
+ *   (a Writer, a StringBuilder, ...), so the report as a whole never has
+ *   to be held in memory
+ * - writeTo() renders every page in order, e.g. into a file
+ *
+ * Usage:
+ *   try (Writer out = Files.newBufferedWriter(path)) {
+ *       report.writeTo(out);
+ *   }
+ */
+public interface ReportDocument {
+    
+    String getTitle();
+    
+    /**
+     * Number of pages; at least 1
+     */
+    int getPageCount();
+    
+    /**
+     * Append one page (0-based) to the output
+     */
+    void writePage(int page, Appendable out) throws IOException;
+    
+    /**
+     * Append the whole report, page after page
+     */
+    default void writeTo(Appendable out) throws IOException {
+        int pageCount = getPageCount();
+        for (int page = 0; page < pageCount; page++) {
+            writePage(page, out);
+        }
+    }
+    
+    /**
+     * A report that already exists as text, split into pages of lines
+     */
+    static ReportDocument ofText(String title, String text, int linesPerPage) {
+        String content = text != null ? text : "";
+        List<Integer> pageStarts = new ArrayList<>();
+        pageStarts.add(0);
+        int lines = 0;
+        for (int i = 0; i < content.length(); i++) {
+            if (content.charAt(i) == '\n' && ++lines % linesPerPage == 0 && i + 1 < content.length()) {
+                pageStarts.add(i + 1);
+            }
+        }
+        return new ReportDocument() {
+            @Override
+            public String getTitle() {
+                return title;
+            }
+            
+            @Override
+            public int getPageCount() {
+                return pageStarts.size();
+            }
+            
+            @Override
+            public void writePage(int page, Appendable out) throws IOException {
+                int end = page + 1 < pageStarts.size() ? pageStarts.get(page + 1) : content.length();
+                out.append(content, pageStarts.get(page), end);
+            }
+        };
+    }
+}
@@ -0,0 +1,551 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Invoice;
+import com.inventory.model.InvoiceItem;
+import com.inventory.service.InvoiceCommitPipeline.CommitStatus;
+import com.inventory.util.Money;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * SalesFactStore - Sold invoice lines held in memory, one primitive array per column
+ * Features:
+ * - Columns: day (epoch day), product, customer, payment type, quantity
+ *   and amount in minor units (see Money)
+ * - Product IDs, customer IDs and payment types are stored as small int
+ *   codes; each distinct value is kept once
+ * - Totals and group-by (product, customer, payment type, day) are plain
+ *   loops over the arrays: no objects are touched or created per line
+ * - Filters on a date range, customer, product and payment type
+ * - Committed invoices are appended automatically from the commit pipeline
+ * - Safe for queries from any thread while invoices are appended; a query
+ *   sees the lines appended before it started
+ * - Each invoice is counted once, also when it is committed while the
+ *   history is read or replayed from the journal after the history had it
+ *
+ * Created by its first consumer (the reports), not by the commit pipeline,
+ * so a terminal that never runs a report never reads the invoice history.
+ * The history is read once in the background from then on.
+ */
+public class SalesFactStore {
+    
+    public enum Dimension {
+        PRODUCT,
+        CUSTOMER,
+        PAYMENT_TYPE
+    }
+    
+    /**
+     * Lines, quantity and amount of a group of sales lines
+     */
+    public static final class Totals {
+        private final long lineCount;
+        private final long quantity;
+        private final long amount;
+        
+        Totals(long lineCount, long quantity, long amount) {
+            this.lineCount = lineCount;
+            this.quantity = quantity;
+            this.amount = amount;
+        }
+        
+        public long getLineCount() {
+            return lineCount;
+        }
+        
+        public long getQuantity() {
+            return quantity;
+        }
+        
+        /**
+         * Sold amount in minor units
+         */
+        public long getAmount() {
+            return amount;
+        }
+    }
+    
+    /**
+     * Which lines a query reads; every condition left out matches all lines
+     */
+    public static final class Filter {
+        private static final Filter ALL = new Filter(null, null, null, null, null);
+        
+        private final LocalDate fromDate;
+        private final LocalDate toDate;
+        private final String customerId;
+        private final String productId;
+        private final String paymentType;
+        
+        private Filter(LocalDate fromDate, LocalDate toDate, String customerId, String productId,
+                       String paymentType) {
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+            this.customerId = customerId;
+            this.productId = productId;
+            this.paymentType = paymentType;
+        }
+        
+        public static Filter all() {
+            return ALL;
+        }
+        
+        /**
+         * Lines between two dates (inclusive); null for an open end
+         */
+        public Filter between(LocalDate from, LocalDate to) {
+            return new Filter(from, to, customerId, productId, paymentType);
+        }
+        
+        public Filter customer(String id) {
+            return new Filter(fromDate, toDate, id, productId, paymentType);
+        }
+        
+        public Filter product(String id) {
+            return new Filter(fromDate, toDate, customerId, id, paymentType);
+        }
+        
+        public Filter paymentType(String type) {
+            return new Filter(fromDate, toDate, customerId, productId, type);
+        }
+    }
+    
+    private static final int INITIAL_CAPACITY = 4096;
+    
+    // Code used for lines without a customer, product or payment type
+    private static final String NONE = "";
+    
+    private static volatile SalesFactStore instance;
+    
+    /**
+     * Columns and dictionaries as of one append. Arrays are only written
+     * past size (and past the dictionary counts), so a query can read a
+     * published Columns without locking.
+     */
+    private static final class Columns {
+        final int size;
+        final int[] days;
+        final int[] products;
+        final int[] customers;
+        final int[] paymentTypes;
+        final int[] quantities;
+        final long[] amounts;
+        final String[] productIds;
+        final String[] customerIds;
+        final String[] paymentTypeNames;
+        final Map<String, Integer> productCodes;
+        final Map<String, Integer> customerCodes;
+        final Map<String, Integer> paymentTypeCodes;
+        final int productCount;
+        final int customerCount;
+        final int paymentTypeCount;
+        
+        Columns(int size, int[] days, int[] products, int[] customers, int[] paymentTypes,
+                int[] quantities, long[] amounts,
+                Dictionary productDictionary, Dictionary customerDictionary, Dictionary paymentTypeDictionary) {
+            this.size = size;
+            this.days = days;
+            this.products = products;
+            this.customers = customers;
+            this.paymentTypes = paymentTypes;
+            this.quantities = quantities;
+            this.amounts = amounts;
+            this.productIds = productDictionary.values;
+            this.customerIds = customerDictionary.values;
+            this.paymentTypeNames = paymentTypeDictionary.values;
+            this.productCodes = productDictionary.codes;
+            this.customerCodes = customerDictionary.codes;
+            this.paymentTypeCodes = paymentTypeDictionary.codes;
+            this.productCount = productDictionary.codes.size();
+            this.customerCount = customerDictionary.codes.size();
+            this.paymentTypeCount = paymentTypeDictionary.codes.size();
+        }
+    }
+    
+    /**
+     * Distinct values of one column and their codes; written only while
+     * appending. Codes can be looked up from any thread; a code at or past
+     * the count of a published Columns is not part of it yet.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+        private String[] values = new String[64];
+        
+        int encode(String value) {
+            String key = value != null ? value : NONE;
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = codes.size();
+                if (code == values.length) {
+                    values = Arrays.copyOf(values, values.length * 2);
+                }
+                values[code] = key;
+                codes.put(key, code);
+            }
+            return code;
+        }
+    }
+    
+    private final Dictionary productDictionary = new Dictionary();
+    private final Dictionary customerDictionary = new Dictionary();
+    private final Dictionary paymentTypeDictionary = new Dictionary();
+    
+    // Written only by append, under the lock
+    private int size;
+    private int[] days = new int[INITIAL_CAPACITY];
+    private int[] products = new int[INITIAL_CAPACITY];
+    private int[] customers = new int[INITIAL_CAPACITY];
+    private int[] paymentTypes = new int[INITIAL_CAPACITY];
+    private int[] quantities = new int[INITIAL_CAPACITY];
+    private long[] amounts = new long[INITIAL_CAPACITY];
+    
+    private volatile Columns columns = publish();
+    private volatile boolean ready;
+    
+    // While the history is read: invoices journaled since it started (and
+    // pending before), and invoices appended since; null otherwise
+    private Set<String> journaledDuringLoad;
+    private Set<String> committedDuringLoad;
+    
+    // In the history, but the pipeline has not reported them committed yet
+    private final Set<String> loadedUncommitted = new HashSet<>();
+    
+    public static SalesFactStore getInstance() {
+        SalesFactStore store = instance;
+        if (store == null) {
+            // Not under our lock: the pipeline may be starting on another thread
+            InvoiceCommitPipeline pipeline = InvoiceCommitPipeline.getInstance();
+            synchronized (SalesFactStore.class) {
+                store = instance;
+                if (store == null) {
+                    store = new SalesFactStore();
+                    InvoiceService invoiceService = new InvoiceService();
+                    // Invoices are committed meanwhile; their events wait for the
+                    // load to be set up, so each is either in the history or appended
+                    synchronized (store) {
+                        pipeline.addCommitListener(store::commitStatusChanged);
+                        store.loadInBackground(invoiceService::getAllInvoices, pipeline.getPendingInvoiceNos());
+                    }
+                    instance = store;
+                }
+            }
+        }
+        return store;
+    }
+    
+    /**
+     * Read the invoice history on a background thread and load() it,
+     * unless that is running or done already
+     *
+     * @param pendingInvoiceNos invoices still in the journal; the history may
+     *                          already contain them when they are committed
+     */
+    public synchronized void loadInBackground(Supplier<? extends Collection<Invoice>> history,
+                                              Collection<String> pendingInvoiceNos) {
+        if (ready || journaledDuringLoad != null) {
+            return;
+        }
+        journaledDuringLoad = new HashSet<>(pendingInvoiceNos);
+        committedDuringLoad = new HashSet<>();
+        Thread thread = new Thread(() -> {
+            try {
+                load(history.get());
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                synchronized (this) {
+                    journaledDuringLoad = null;
+                    committedDuringLoad = null;
+                }
+            }
+        }, "sales-fact-load");
+        thread.setDaemon(true);
+        thread.start();
+    }
+    
+    /**
+     * Append the invoice history; the store is ready for queries afterwards.
+     * Invoices appended from the pipeline while the history was read are skipped.
+     */
+    public synchronized void load(Collection<Invoice> invoices) {
+        for (Invoice invoice : invoices) {
+            String invoiceNo = invoice.getInvoiceNo();
+            if (committedDuringLoad != null && committedDuringLoad.contains(invoiceNo)) {
+                continue;
+            }
+            if (journaledDuringLoad != null && journaledDuringLoad.contains(invoiceNo)) {
+                // Saved, but its COMMITTED is still to come
+                loadedUncommitted.add(invoiceNo);
+            }
+            appendLines(invoice);
+        }
+        journaledDuringLoad = null;
+        committedDuringLoad = null;
+        columns = publish();
+        ready = true;
+    }
+    
+    /**
+     * True once the history has been loaded
+     */
+    public boolean isReady() {
+        return ready;
+    }
+    
+    /**
+     * Append the lines of a saved invoice
+     */
+    public synchronized void append(Invoice invoice) {
+        appendLines(invoice);
+        columns = publish();
+    }
+    
+    public int size() {
+        return columns.size;
+    }
+    
+    /**
+     * Totals over all lines the filter matches
+     */
+    public Totals total(Filter filter) {
+        Columns c = columns;
+        long lineCount = 0;
+        long quantity = 0;
+        long amount = 0;
+        Scan scan = new Scan(c, filter);
+        if (scan.empty) {
+            return new Totals(0, 0, 0);
+        }
+        int[] quantities = c.quantities;
+        long[] amounts = c.amounts;
+        for (int i = 0; i < c.size; i++) {
+            if (scan.matches(i)) {
+                lineCount++;
+                quantity += quantities[i];
+                amount += amounts[i];
+            }
+        }
+        return new Totals(lineCount, quantity, amount);
+    }
+    
+    /**
+     * Totals per product, customer or payment type, in the order the
+     * values were first sold. Lines without the value are under "".
+     */
+    public Map<String, Totals> groupBy(Dimension dimension, Filter filter) {
+        Columns c = columns;
+        Map<String, Totals> result = new LinkedHashMap<>();
+        Scan scan = new Scan(c, filter);
+        if (scan.empty) {
+            return result;
+        }
+        int[] keys;
+        String[] names;
+        int groups;
+        switch (dimension) {
+            case PRODUCT:
+                keys = c.products;
+                names = c.productIds;
+                groups = c.productCount;
+                break;
+            case CUSTOMER:
+                keys = c.customers;
+                names = c.customerIds;
+                groups = c.customerCount;
+                break;
+            default:
+                keys = c.paymentTypes;
+                names = c.paymentTypeNames;
+                groups = c.paymentTypeCount;
+                break;
+        }
+        
+        // One slot per code; codes are dense, so this is an array, not a map
+        long[] lineCounts = new long[groups];
+        long[] quantitySums = new long[groups];
+        long[] amountSums = new long[groups];
+        int[] quantities = c.quantities;
+        long[] amounts = c.amounts;
+        for (int i = 0; i < c.size; i++) {
+            if (scan.matches(i)) {
+                int key = keys[i];
+                lineCounts[key]++;
+                quantitySums[key] += quantities[i];
+                amountSums[key] += amounts[i];
+            }
+        }
+        for (int key = 0; key < groups; key++) {
+            if (lineCounts[key] > 0) {
+                result.put(names[key], new Totals(lineCounts[key], quantitySums[key], amountSums[key]));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Totals per day, in date order; days without sales are left out
+     */
+    public NavigableMap<LocalDate, Totals> groupByDay(Filter filter) {
+        Columns c = columns;
+        NavigableMap<LocalDate, Totals> result = new TreeMap<>();
+        Scan scan = new Scan(c, filter);
+        if (scan.empty || c.size == 0) {
+            return result;
+        }
+        int[] days = c.days;
+        
+        // Days covered by the matching lines, so the sums fit in one array
+        int firstDay = Integer.MAX_VALUE;
+        int lastDay = Integer.MIN_VALUE;
+        for (int i = 0; i < c.size; i++) {
+            if (scan.matches(i)) {
+                firstDay = Math.min(firstDay, days[i]);
+                lastDay = Math.max(lastDay, days[i]);
+            }
+        }
+        if (firstDay > lastDay) {
+            return result;
+        }
+        
+        int dayCount = lastDay - firstDay + 1;
+        long[] lineCounts = new long[dayCount];
+        long[] quantitySums = new long[dayCount];
+        long[] amountSums = new long[dayCount];
+        int[] quantities = c.quantities;
+        long[] amounts = c.amounts;
+        for (int i = 0; i < c.size; i++) {
+            if (scan.matches(i)) {
+                int day = days[i] - firstDay;
+                lineCounts[day]++;
+                quantitySums[day] += quantities[i];
+                amountSums[day] += amounts[i];
+            }
+        }
+        for (int day = 0; day < dayCount; day++) {
+            if (lineCounts[day] > 0) {
+                result.put(LocalDate.ofEpochDay(firstDay + day),
+                    new Totals(lineCounts[day], quantitySums[day], amountSums[day]));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * A filter turned into codes and day numbers for one Columns
+     */
+    private static final class Scan {
+        private final int[] days;
+        private final int[] products;
+        private final int[] customers;
+        private final int[] paymentTypes;
+        private final int fromDay;
+        private final int toDay;
+        private final int product;
+        private final int customer;
+        private final int paymentType;
+        
+        // A value the filter asks for was never sold; nothing can match
+        private final boolean empty;
+        
+        Scan(Columns c, Filter filter) {
+            this.days = c.days;
+            this.products = c.products;
+            this.customers = c.customers;
+            this.paymentTypes = c.paymentTypes;
+            this.fromDay = filter.fromDate != null ? (int) filter.fromDate.toEpochDay() : Integer.MIN_VALUE;
+            this.toDay = filter.toDate != null ? (int) filter.toDate.toEpochDay() : Integer.MAX_VALUE;
+            this.product = code(c.productCodes, c.productCount, filter.productId);
+            this.customer = code(c.customerCodes, c.customerCount, filter.customerId);
+            this.paymentType = code(c.paymentTypeCodes, c.paymentTypeCount, filter.paymentType);
+            this.empty = product == -2 || customer == -2 || paymentType == -2 || fromDay > toDay;
+        }
+        
+        boolean matches(int i) {
+            int day = days[i];
+            return day >= fromDay && day <= toDay
+                && (product < 0 || products[i] == product)
+                && (customer < 0 || customers[i] == customer)
+                && (paymentType < 0 || paymentTypes[i] == paymentType);
+        }
+        
+        /**
+         * -1 for any value, -2 for a value that is not in the dictionary
+         * as of the published count
+         */
+        private static int code(Map<String, Integer> codes, int count, String value) {
+            if (value == null) {
+                return -1;
+            }
+            Integer code = codes.get(value);
+            return code != null && code < count ? code : -2;
+        }
+    }
+    
+    private void appendLines(Invoice invoice) {
+        if (invoice.getItems() == null || invoice.getInvoiceDate() == null) {
+            return;
+        }
+        int day = (int) invoice.getInvoiceDate().toEpochDay();
+        int customer = customerDictionary.encode(invoice.getCustomer() != null ? invoice.getCustomer().getId() : null);
+        int paymentType = paymentTypeDictionary.encode(invoice.getPaymentType());
+        for (InvoiceItem item : invoice.getItems()) {
+            if (size == days.length) {
+                grow();
+            }
+            days[size] = day;
+            products[size] = productDictionary.encode(item.getProduct() != null ? item.getProduct().getId() : null);
+            customers[size] = customer;
+            paymentTypes[size] = paymentType;
+            quantities[size] = item.getQuantity();
+            amounts[size] = Money.ofDecimal(item.getTotalPrice());
+            size++;
+        }
+    }
+    
+    /**
+     * New, larger arrays; published Columns keep the old ones
+     */
+    private void grow() {
+        int capacity = days.length + (days.length >> 1);
+        days = Arrays.copyOf(days, capacity);
+        products = Arrays.copyOf(products, capacity);
+        customers = Arrays.copyOf(customers, capacity);
+        paymentTypes = Arrays.copyOf(paymentTypes, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+    }
+    
+    private Columns publish() {
+        return new Columns(size, days, products, customers, paymentTypes, quantities, amounts,
+            productDictionary, customerDictionary, paymentTypeDictionary);
+    }
+    
+    private synchronized void commitStatusChanged(Invoice invoice, CommitStatus status, String message) {
+        String invoiceNo = invoice.getInvoiceNo();
+        if (status == CommitStatus.JOURNALED) {
+            if (journaledDuringLoad != null) {
+                journaledDuringLoad.add(invoiceNo);
+            }
+        } else if (status == CommitStatus.COMMITTED) {
+            if (loadedUncommitted.remove(invoiceNo)) {
+                // Read with the history already
+                return;
+            }
+            if (committedDuringLoad != null) {
+                committedDuringLoad.add(invoiceNo);
+            }
+            append(invoice);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SharedPropertiesFile - Small properties file changed by several terminals
+ * Features:
+ * - Every update reads, changes and rewrites the file under an exclusive
+ *   lock on a separate lock file beside it
+ * - The new contents are written and forced to a temporary file that is
+ *   then moved over the old one, so a crash or a dropped network share
+ *   leaves either the old file or the complete new one
+ * - Threads of this process queue on a lock of their own per file first,
+ *   as file locks are held per process; different files never wait for
+ *   each other
+ *
+ * Meant for small state in AppPaths.getSharedDirectory() that is touched
+ * now and then (invoice number leases, stock reservations per product).
+ */
+class SharedPropertiesFile {
+    
+    interface Update<T> {
+        T apply(Properties props) throws IOException;
+    }
+    
+    // Lock file -> lock taken by the threads of this process
+    private static final Map<Path, Object> PROCESS_LOCKS = new ConcurrentHashMap<>();
+    
+    private final Path file;
+    private final Path lockFile;
+    private final Path tempFile;
+    private final String comment;
+    private final Object processLock;
+    
+    SharedPropertiesFile(Path file, String comment) {
+        this.file = file;
+        this.lockFile = file.resolveSibling(file.getFileName() + ".lock");
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        this.comment = comment;
+        this.processLock = PROCESS_LOCKS.computeIfAbsent(lockFile.toAbsolutePath().normalize(), path -> new Object());
+    }
+    
+    /**
+     * Apply an update to the current contents and write them back
+     */
+    <T> T update(Update<T> update) throws IOException {
+        return locked(update, true);
+    }
+    
+    /**
+     * Look at the current contents without writing the file
+     */
+    <T> T read(Update<T> query) throws IOException {
+        return locked(query, false);
+    }
+    
+    private <T> T locked(Update<T> update, boolean write) throws IOException {
+        synchronized (processLock) {
+            // The data file itself is replaced on every write, so it cannot carry the lock
+            try (FileChannel lockChannel = FileChannel.open(lockFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                FileLock lock = lockChannel.lock();
+                try {
+                    Properties props = new Properties();
+                    if (Files.exists(file)) {
+                        try (InputStream in = Files.newInputStream(file)) {
+                            props.load(in);
+                        }
+                    }
+                    
+                    T result = update.apply(props);
+                    if (write) {
+                        replaceWith(props);
+                    }
+                    return result;
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+    
+    private void replaceWith(Properties props) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        props.store(out, comment);
+        try (FileChannel channel = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data = ByteBuffer.wrap(out.toByteArray());
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            Files.deleteIfExists(tempFile);
+            throw ex;
+        }
+    }
+}
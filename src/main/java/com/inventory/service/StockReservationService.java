@@ -0,0 +1,270 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import com.inventory.model.Invoice;
+import com.inventory.model.InvoiceItem;
+import com.inventory.model.Product;
+import com.inventory.service.InvoiceCommitPipeline.CommitStatus;
+import com.inventory.util.AppPaths;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * StockReservationService - Reserves stock while it sits on an open invoice
+ * Features:
+ * - A line added at the till reserves its quantity, checked against the
+ *   reservations of all terminals in the shared StockReservationStore and
+ *   the stock recorded there, without a database hit
+ * - Only when that fails is the product re-read, with reserveAfterRefresh()
+ *   off the event dispatch thread, as it may have been restocked
+ * - Removing the line releases it again
+ * - Paid invoices keep their reservation until the commit pipeline has
+ *   stored them; then the products are re-read and the reservation dropped
+ *   together with recording the stock left
+ * - FAILED invoices give their reservation up; they stay in the journal
+ *   and the products are re-read once they are stored after all
+ * - Invoices replayed from the journal are reserved again
+ * - Lines left open by a crashed run are released when this terminal starts
+ *
+ * The database remains the final check when the invoice is saved.
+ */
+public class StockReservationService {
+    
+    private static final String RESERVATION_DIRECTORY = "stock-reservations";
+    private static final String OPEN_HOLD = "open";
+    
+    private static volatile StockReservationService instance;
+    
+    private final ProductCatalog productCatalog;
+    private final StockReservationStore store;
+    private final String terminalId;
+    
+    // Invoices of this terminal that hold a reservation
+    private final Set<String> heldInvoices = ConcurrentHashMap.newKeySet();
+    
+    // Products reserved for lines open at this till since it started
+    private final Set<String> openProducts = ConcurrentHashMap.newKeySet();
+    
+    public StockReservationService(ProductCatalog productCatalog, StockReservationStore store, String terminalId) {
+        this.productCatalog = productCatalog;
+        this.store = store;
+        this.terminalId = terminalId;
+    }
+    
+    /**
+     * Get the service for this terminal. The first call drops reservations
+     * this terminal left behind, except for invoices still in the journal.
+     */
+    public static StockReservationService getInstance() {
+        StockReservationService service = instance;
+        if (service == null) {
+            // Not under our lock: the pipeline subscribes this service while it starts
+            InvoiceCommitPipeline pipeline = InvoiceCommitPipeline.getInstance();
+            synchronized (StockReservationService.class) {
+                service = instance;
+                if (service == null) {
+                    try {
+                        StockReservationStore store = new StockReservationStore(
+                            AppPaths.getSharedDirectory().resolve(RESERVATION_DIRECTORY));
+                        service = new StockReservationService(ProductCatalog.getInstance(), store,
+                                                              InvoiceNumberAllocator.resolveTerminalId());
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException("Cannot open stock reservations", ex);
+                    }
+                    service.recover(pipeline.getPendingInvoiceNos());
+                    pipeline.addCommitListener(service::commitStatusChanged);
+                    Runtime.getRuntime().addShutdownHook(new Thread(service::releaseOpenLines, "stock-reservation-release"));
+                    instance = service;
+                }
+            }
+        }
+        return service;
+    }
+    
+    /**
+     * Reserve quantity of a product if that much is still available. Checked
+     * against the stock recorded with the reservations, which every terminal
+     * updates when it stores a sale, or else the cached product.
+     *
+     * @return false if the stock not reserved by others is too low; it may
+     *         have been restocked since, see reserveAfterRefresh()
+     */
+    public boolean reserve(String productId, int quantity) throws IOException {
+        if (quantity <= 0) {
+            return true;
+        }
+        return reserve(productId, quantity, getStock(productCatalog.findById(productId)));
+    }
+    
+    /**
+     * Re-read the product from the database, record its stock and reserve
+     * against that. Not for the event dispatch thread.
+     */
+    public boolean reserveAfterRefresh(String productId, int quantity) throws IOException {
+        int stock = getStock(productCatalog.refresh(productId));
+        store.updateStock(productId, stock);
+        return quantity <= 0 || reserve(productId, quantity, stock);
+    }
+    
+    private boolean reserve(String productId, int quantity, int stock) throws IOException {
+        if (!store.reserve(openHold(), productId, quantity, stock)) {
+            return false;
+        }
+        openProducts.add(productId);
+        return true;
+    }
+    
+    public void release(String productId, int quantity) {
+        if (quantity <= 0) {
+            return;
+        }
+        try {
+            store.release(openHold(), productId, quantity);
+        } catch (IOException ex) {
+            // Stays reserved until this terminal restarts
+            ex.printStackTrace();
+        }
+    }
+    
+    /**
+     * Release all lines of an invoice that is abandoned at the till
+     */
+    public void releaseAll(Iterable<InvoiceItem> items) {
+        for (InvoiceItem item : items) {
+            if (item.getProduct() != null) {
+                release(item.getProduct().getId(), item.getQuantity());
+            }
+        }
+    }
+    
+    /**
+     * Keep the reservations of a paid invoice until it is committed.
+     * Call before submitting it to the commit pipeline.
+     */
+    public void holdUntilCommitted(Invoice invoice) throws IOException {
+        store.move(openHold(), invoiceHold(invoice.getInvoiceNo()), quantities(invoice));
+        heldInvoices.add(invoice.getInvoiceNo());
+    }
+    
+    /**
+     * Undo holdUntilCommitted when the invoice could not be submitted;
+     * the lines stay reserved for the open invoice
+     */
+    public void cancelHold(Invoice invoice) {
+        heldInvoices.remove(invoice.getInvoiceNo());
+        try {
+            store.move(invoiceHold(invoice.getInvoiceNo()), openHold(), quantities(invoice));
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    /**
+     * Stock on hand minus what all terminals have reserved
+     */
+    public int getAvailable(String productId) {
+        int stock = getStock(productCatalog.findById(productId));
+        try {
+            return store.getAvailable(productId, stock);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return stock;
+        }
+    }
+    
+    public int getReserved(String productId) {
+        try {
+            return store.getReserved(productId);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return 0;
+        }
+    }
+    
+    private static int getStock(Product product) {
+        return product != null ? product.getStockQuantity() : 0;
+    }
+    
+    /**
+     * Drop what an earlier run of this terminal left reserved: its open lines
+     * and invoices no longer in the journal
+     */
+    private void recover(Collection<String> pendingInvoiceNos) {
+        Set<String> keep = new HashSet<>();
+        for (String invoiceNo : pendingInvoiceNos) {
+            keep.add(invoiceHold(invoiceNo));
+        }
+        try {
+            for (String holdKey : store.retainHolds(terminalId, keep)) {
+                heldInvoices.add(holdKey.substring(holdKey.indexOf('/') + 1));
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    private void releaseOpenLines() {
+        try {
+            store.releaseHold(openHold(), openProducts);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    private void commitStatusChanged(Invoice invoice, CommitStatus status, String message) {
+        String invoiceNo = invoice.getInvoiceNo();
+        try {
+            if (status == CommitStatus.JOURNALED) {
+                // Replayed from the journal: reserve again unless the hold survived
+                if (heldInvoices.add(invoiceNo)) {
+                    store.putIfAbsent(invoiceHold(invoiceNo), quantities(invoice));
+                }
+            } else if (status == CommitStatus.COMMITTED) {
+                // The reduced stock replaces the reservation in one update, so the
+                // quantity is never counted as free
+                boolean held = heldInvoices.remove(invoiceNo);
+                for (String productId : quantities(invoice).keySet()) {
+                    int stock = getStock(productCatalog.refresh(productId));
+                    if (held) {
+                        store.settle(invoiceHold(invoiceNo), productId, stock);
+                    } else {
+                        store.updateStock(productId, stock);
+                    }
+                }
+            } else if (status == CommitStatus.FAILED) {
+                // Still in the journal and retried, but no longer blocks other sales
+                if (heldInvoices.remove(invoiceNo)) {
+                    store.releaseHold(invoiceHold(invoiceNo), quantities(invoice).keySet());
+                }
+            }
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+    
+    private String openHold() {
+        return StockReservationStore.holdKey(terminalId, OPEN_HOLD);
+    }
+    
+    private String invoiceHold(String invoiceNo) {
+        return StockReservationStore.holdKey(terminalId, invoiceNo);
+    }
+    
+    private static Map<String, Integer> quantities(Invoice invoice) {
+        Map<String, Integer> quantities = new HashMap<>();
+        for (InvoiceItem item : invoice.getItems()) {
+            if (item.getProduct() != null) {
+                quantities.merge(item.getProduct().getId(), item.getQuantity(), Integer::sum);
+            }
+        }
+        return quantities;
+    }
+}
@@ -0,0 +1,248 @@
+package main.java.com.inventory.service;
+
+// package com.inventory.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * StockReservationStore - Stock reserved by all terminals, in the shared directory
+ *
+ * One small file per product, changed only under that product's own lock,
+ * so tills reserving different products never wait for each other:
+ * - [terminalId]/open        quantity in lines open at a till
+ * - [terminalId]/[invoiceNo] quantity of a paid invoice not yet in the database
+ * - stock                    stock on hand, recorded when a sale of the
+ *                            product was stored or the stock was re-read
+ *
+ * What is reserved for a product is the sum over its holds, so checking and
+ * reserving happen in one locked update of that one file.
+ */
+public class StockReservationStore {
+    
+    private static final char SEPARATOR = '/';
+    private static final String KEY_STOCK = "stock";
+    private static final String FILE_SUFFIX = ".properties";
+    
+    private final Path directory;
+    
+    /**
+     * @param directory reservation directory, normally in AppPaths.getSharedDirectory()
+     */
+    public StockReservationStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+    }
+    
+    /**
+     * Key of a hold; terminal IDs and hold names must not contain '/'
+     */
+    public static String holdKey(String terminalId, String hold) {
+        return terminalId + SEPARATOR + hold;
+    }
+    
+    /**
+     * Add quantity to a hold if the product's reservations stay within stock
+     *
+     * @param stock stock on hand to check against if none is recorded
+     * @return false if other holds leave too little stock
+     */
+    public boolean reserve(String holdKey, String productId, int quantity, int stock) throws IOException {
+        return file(productId).update(props -> {
+            if (reserved(props) + quantity > stock(props, stock)) {
+                return false;
+            }
+            add(props, holdKey, quantity);
+            return true;
+        });
+    }
+    
+    public void release(String holdKey, String productId, int quantity) throws IOException {
+        file(productId).update(props -> {
+            add(props, holdKey, -quantity);
+            return null;
+        });
+    }
+    
+    /**
+     * Move quantities from one hold to another, e.g. the lines of an invoice
+     * from the open till to the paid invoice. Only what the source holds is
+     * moved. Each product is moved on its own.
+     */
+    public void move(String fromHold, String toHold, Map<String, Integer> quantities) throws IOException {
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            file(entry.getKey()).update(props -> {
+                int moved = Math.min(quantity(props, fromHold), entry.getValue());
+                add(props, fromHold, -moved);
+                add(props, toHold, moved);
+                return null;
+            });
+        }
+    }
+    
+    /**
+     * Reserve the quantities under a hold, for each product that has none
+     * under it yet; stock is not checked, the sale has already happened
+     */
+    public void putIfAbsent(String holdKey, Map<String, Integer> quantities) throws IOException {
+        for (Map.Entry<String, Integer> entry : quantities.entrySet()) {
+            file(entry.getKey()).update(props -> {
+                if (props.getProperty(holdKey) == null) {
+                    add(props, holdKey, entry.getValue());
+                }
+                return null;
+            });
+        }
+    }
+    
+    /**
+     * Drop what a hold reserves of these products
+     */
+    public void releaseHold(String holdKey, Collection<String> productIds) throws IOException {
+        for (String productId : productIds) {
+            file(productId).update(props -> {
+                props.remove(holdKey);
+                return null;
+            });
+        }
+    }
+    
+    /**
+     * Drop what a hold reserves of a product and record the stock left, in
+     * one update, once the sale is in the database
+     */
+    public void settle(String holdKey, String productId, int stock) throws IOException {
+        file(productId).update(props -> {
+            props.remove(holdKey);
+            props.setProperty(KEY_STOCK, String.valueOf(stock));
+            return null;
+        });
+    }
+    
+    /**
+     * Record the stock on hand as just read from the database
+     */
+    public void updateStock(String productId, int stock) throws IOException {
+        file(productId).update(props -> {
+            props.setProperty(KEY_STOCK, String.valueOf(stock));
+            return null;
+        });
+    }
+    
+    /**
+     * Drop every hold of a terminal except the given ones, e.g. what a
+     * terminal left behind when it stopped. Goes through every product.
+     *
+     * @return the holds that were kept and still exist
+     */
+    public Set<String> retainHolds(String terminalId, Collection<String> keepHoldKeys) throws IOException {
+        String prefix = terminalId + SEPARATOR;
+        Set<String> kept = new HashSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+            for (Path path : files) {
+                SharedPropertiesFile file = file(path);
+                boolean holdsAny = file.read(props -> {
+                    for (String key : props.stringPropertyNames()) {
+                        if (key.startsWith(prefix)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                });
+                if (!holdsAny) {
+                    continue;
+                }
+                file.update(props -> {
+                    for (String key : props.stringPropertyNames()) {
+                        if (!key.startsWith(prefix)) {
+                            continue;
+                        }
+                        if (keepHoldKeys.contains(key)) {
+                            kept.add(key);
+                        } else {
+                            props.remove(key);
+                        }
+                    }
+                    return null;
+                });
+            }
+        }
+        return kept;
+    }
+    
+    /**
+     * Quantity of a product reserved by all terminals
+     */
+    public int getReserved(String productId) throws IOException {
+        return file(productId).read(StockReservationStore::reserved);
+    }
+    
+    /**
+     * Stock of a product not reserved by any terminal
+     *
+     * @param stock stock on hand to use if none is recorded
+     */
+    public int getAvailable(String productId, int stock) throws IOException {
+        return file(productId).read(props -> stock(props, stock) - reserved(props));
+    }
+    
+    private SharedPropertiesFile file(String productId) {
+        return file(directory.resolve(fileName(productId)));
+    }
+    
+    private static SharedPropertiesFile file(Path path) {
+        return new SharedPropertiesFile(path,
+            "Stock reservations of one product - do not edit while terminals are running");
+    }
+    
+    /**
+     * File name for a product ID; hex, as IDs may hold any character and
+     * file names may ignore case
+     */
+    private static String fileName(String productId) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : productId.getBytes(StandardCharsets.UTF_8)) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.append(FILE_SUFFIX).toString();
+    }
+    
+    private static int reserved(Properties props) {
+        int total = 0;
+        for (String key : props.stringPropertyNames()) {
+            if (!KEY_STOCK.equals(key)) {
+                total += quantity(props, key);
+            }
+        }
+        return total;
+    }
+    
+    private static int stock(Properties props, int fallback) {
+        String recorded = props.getProperty(KEY_STOCK);
+        return recorded != null ? quantity(props, KEY_STOCK) : fallback;
+    }
+    
+    private static int quantity(Properties props, String key) {
+        try {
+            return Integer.parseInt(props.getProperty(key, "0").trim());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+    }
+    
+    private static void add(Properties props, String key, int delta) {
+        int quantity = quantity(props, key) + delta;
+        if (quantity > 0) {
+            props.setProperty(key, String.valueOf(quantity));
+        } else {
+            props.remove(key);
+        }
+    }
+}
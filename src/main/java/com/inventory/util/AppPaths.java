@@ -0,0 +1,57 @@
+package main.java.com.inventory.util;
+
+// package com.inventory.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * AppPaths - Locations of files kept by the application outside the
+ * main database (local journals, shared invoice number leases)
+ */
+public class AppPaths {
+    
+    private static final String DATA_DIR_PROPERTY = "inventory.dataDir";
+    private static final String SHARED_DIR_PROPERTY = "inventory.sharedDir";
+    private static final String DEFAULT_DATA_DIR = ".pos_inventory";
+    
+    private AppPaths() {
+    }
+    
+    /**
+     * Get the local data directory, creating it if needed.
+     * Can be overridden with -Dinventory.dataDir=...
+     */
+    public static Path getDataDirectory() throws IOException {
+        String configured = System.getProperty(DATA_DIR_PROPERTY);
+        Path dir = configured != null && !configured.trim().isEmpty()
+            ? Paths.get(configured.trim())
+            : Paths.get(System.getProperty("user.home"), DEFAULT_DATA_DIR);
+        Files.createDirectories(dir);
+        return dir;
+    }
+    
+    public static Path resolve(String fileName) throws IOException {
+        return getDataDirectory().resolve(fileName);
+    }
+    
+    /**
+     * Get the directory shared by all terminals of the shop (e.g. a network
+     * share), set with -Dinventory.sharedDir=...
+     * There is no default: terminals that each fell back to a local directory
+     * would issue the same invoice numbers. A shop with a single terminal
+     * can point it at the local data directory.
+     */
+    public static Path getSharedDirectory() throws IOException {
+        String configured = System.getProperty(SHARED_DIR_PROPERTY);
+        if (configured == null || configured.trim().isEmpty()) {
+            throw new IOException("No shared directory set. Start every terminal with -D"
+                + SHARED_DIR_PROPERTY + "=<folder shared by all terminals>");
+        }
+        Path dir = Paths.get(configured.trim());
+        Files.createDirectories(dir);
+        return dir;
+    }
+}
@@ -0,0 +1,125 @@
+package main.java.com.inventory.util;
+
+// package com.inventory.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * CsvReader - Reads comma-separated files record by record
+ * Features:
+ * - Quoted fields with commas, doubled quotes and line breaks (RFC 4180)
+ * - \n, \r\n and \r line endings; a leading byte order mark is skipped
+ * - Splitting a record into fields is separate from reading it, so
+ *   records can be split on other threads
+ */
+public class CsvReader implements AutoCloseable {
+    
+    private final Reader reader;
+    private final char[] buffer = new char[64 * 1024];
+    private int position;
+    private int limit;
+    private boolean started;
+    
+    public CsvReader(Reader reader) {
+        this.reader = reader;
+    }
+    
+    /**
+     * Raw text of the next record, without its line ending; null at the end.
+     * Blank lines are skipped.
+     */
+    public String nextRecord() throws IOException {
+        StringBuilder record = new StringBuilder(128);
+        boolean quoted = false;
+        while (true) {
+            int c = read();
+            if (c < 0) {
+                return record.length() > 0 ? record.toString() : null;
+            }
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (c == '\n' || c == '\r')) {
+                if (c == '\r' && peek() == '\n') {
+                    read();
+                }
+                if (record.length() == 0) {
+                    continue;
+                }
+                return record.toString();
+            }
+            record.append((char) c);
+        }
+    }
+    
+    /**
+     * Fields of a record returned by nextRecord(); quotes are removed
+     */
+    public static String[] parseRecord(String record) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++) {
+            char c = record.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    if (i + 1 < record.length() && record.charAt(i + 1) == '"') {
+                        field.append('"');
+                        i++;
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(new String[0]);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+    
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+    
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+    
+    private boolean fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        if (!started) {
+            started = true;
+            if (buffer[0] == '\uFEFF') {
+                position = 1;
+                return limit > 1 || fill();
+            }
+        }
+        return true;
+    }
+}
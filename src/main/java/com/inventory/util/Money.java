@@ -0,0 +1,195 @@
+package main.java.com.inventory.util;
+
+// package com.inventory.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money - Amounts as a primitive long of minor units (cents)
+ * Features:
+ * - Parsing and formatting without BigDecimal
+ * - Percentages with an explicit rounding mode
+ * - Exact conversion from/to BigDecimal for the model classes and database
+ *
+ * Percentage rates use the same representation, so 7.5% is 750.
+ */
+public final class Money {
+    
+    public static final int SCALE = 2;
+    public static final long ONE = 100;
+    
+    private static final long HUNDRED_PERCENT = 100 * ONE;
+    private static final long MAX_UNITS = Long.MAX_VALUE / ONE;
+    
+    private Money() {
+    }
+    
+    /**
+     * Parse a decimal amount such as "12", "12.5" or "-0.05".
+     * Digits beyond the second decimal are rounded half up.
+     */
+    public static long parse(String text) {
+        if (text == null) {
+            throw new NumberFormatException("null");
+        }
+        String s = text.trim();
+        int length = s.length();
+        int i = 0;
+        boolean negative = false;
+        if (i < length && (s.charAt(i) == '-' || s.charAt(i) == '+')) {
+            negative = s.charAt(i) == '-';
+            i++;
+        }
+        
+        long units = 0;
+        int digits = 0;
+        while (i < length && s.charAt(i) != '.') {
+            int d = digit(s, i++);
+            if (units > (MAX_UNITS - d) / 10) {
+                throw new NumberFormatException("Amount too large: " + text);
+            }
+            units = units * 10 + d;
+            digits++;
+        }
+        
+        long fraction = 0;
+        int fractionDigits = 0;
+        boolean roundUp = false;
+        if (i < length) {
+            i++; // decimal point
+            while (i < length) {
+                int d = digit(s, i++);
+                if (fractionDigits < SCALE) {
+                    fraction = fraction * 10 + d;
+                } else if (fractionDigits == SCALE) {
+                    roundUp = d >= 5;
+                }
+                fractionDigits++;
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            throw new NumberFormatException("Not an amount: \"" + text + "\"");
+        }
+        for (int k = fractionDigits; k < SCALE; k++) {
+            fraction *= 10;
+        }
+        
+        long minor = units * ONE + fraction + (roundUp ? 1 : 0);
+        return negative ? -minor : minor;
+    }
+    
+    /**
+     * Parse an amount typed by the user, returning defaultValue if it is not a number
+     */
+    public static long parse(String text, long defaultValue) {
+        try {
+            return parse(text);
+        } catch (NumberFormatException ex) {
+            return defaultValue;
+        }
+    }
+    
+    private static int digit(String s, int index) {
+        char c = s.charAt(index);
+        if (c < '0' || c > '9') {
+            throw new NumberFormatException("Not an amount: \"" + s + "\"");
+        }
+        return c - '0';
+    }
+    
+    /**
+     * Format with two decimals, e.g. 1205 -> "12.05"
+     */
+    public static String format(long minor) {
+        StringBuilder sb = new StringBuilder(24);
+        appendTo(sb, minor);
+        return sb.toString();
+    }
+    
+    public static void appendTo(StringBuilder sb, long minor) {
+        long units = minor / ONE;
+        long cents = Math.abs(minor % ONE);
+        if (minor < 0 && units == 0) {
+            sb.append('-');
+        }
+        sb.append(units).append('.');
+        if (cents < 10) {
+            sb.append('0');
+        }
+        sb.append(cents);
+    }
+    
+    /**
+     * Exact conversion; values with more than two decimals are rounded half up
+     */
+    public static long ofDecimal(BigDecimal value) {
+        if (value == null) {
+            return 0;
+        }
+        return value.setScale(SCALE, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+    
+    public static BigDecimal toDecimal(long minor) {
+        return BigDecimal.valueOf(minor, SCALE);
+    }
+    
+    /**
+     * Price of a quantity, e.g. unit price times number of items
+     */
+    public static long times(long unitPrice, long quantity) {
+        return Math.multiplyExact(unitPrice, quantity);
+    }
+    
+    /**
+     * rate percent of amount, rate given in hundredths of a percent (750 = 7.5%)
+     */
+    public static long percentOf(long amount, long rate, RoundingMode roundingMode) {
+        if (rate == 0 || amount == 0) {
+            return 0;
+        }
+        return divide(Math.multiplyExact(amount, rate), HUNDRED_PERCENT, roundingMode);
+    }
+    
+    /**
+     * Integer division with the given rounding mode (divisor must be positive)
+     */
+    public static long divide(long dividend, long divisor, RoundingMode roundingMode) {
+        long quotient = dividend / divisor;
+        long remainder = dividend % divisor;
+        if (remainder == 0) {
+            return quotient;
+        }
+        
+        int sign = dividend < 0 ? -1 : 1;
+        long twice = Math.abs(remainder) * 2;
+        boolean awayFromZero;
+        switch (roundingMode) {
+            case UP:
+                awayFromZero = true;
+                break;
+            case DOWN:
+                awayFromZero = false;
+                break;
+            case CEILING:
+                awayFromZero = sign > 0;
+                break;
+            case FLOOR:
+                awayFromZero = sign < 0;
+                break;
+            case HALF_UP:
+                awayFromZero = twice >= divisor;
+                break;
+            case HALF_DOWN:
+                awayFromZero = twice > divisor;
+                break;
+            case HALF_EVEN:
+                awayFromZero = twice > divisor || (twice == divisor && (quotient & 1) != 0);
+                break;
+            default:
+                throw new ArithmeticException("Rounding necessary");
+        }
+        return awayFromZero ? quotient + sign : quotient;
+    }
+}
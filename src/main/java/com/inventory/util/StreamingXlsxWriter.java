@@ -0,0 +1,225 @@
+package main.java.com.inventory.util;
+
+// package com.inventory.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * StreamingXlsxWriter - Writes an Excel (.xlsx) file row by row
+ * Features:
+ * - Rows go straight into the zipped sheet; memory use does not depend on
+ *   the number of rows
+ * - Text is written inline, so there is no shared string table to hold
+ * - Header row in bold, repeated on every sheet
+ * - Starts a new sheet when one is full (Excel's limit is 1,048,576 rows)
+ *
+ * Usage:
+ *   try (StreamingXlsxWriter xlsx = new StreamingXlsxWriter(out, "Customers", header)) {
+ *       xlsx.writeRow(values);
+ *   }
+ */
+public class StreamingXlsxWriter implements AutoCloseable {
+    
+    public static final int MAX_ROWS_PER_SHEET = 1_048_576;
+    
+    private final ZipOutputStream zip;
+    private final Writer writer;
+    private final String sheetName;
+    private final Object[] header;
+    
+    private int sheetCount;
+    private int rowInSheet;
+    private boolean closed;
+    
+    /**
+     * @param header column titles, or null for no header row
+     */
+    public StreamingXlsxWriter(OutputStream out, String sheetName, Object[] header) throws IOException {
+        this.zip = new ZipOutputStream(out, StandardCharsets.UTF_8);
+        this.writer = new BufferedWriter(new OutputStreamWriter(zip, StandardCharsets.UTF_8), 64 * 1024);
+        this.sheetName = sheetName;
+        this.header = header;
+        startSheet();
+    }
+    
+    /**
+     * Append one row. Numbers become numeric cells, null an empty cell,
+     * anything else text.
+     */
+    public void writeRow(Object... values) throws IOException {
+        if (rowInSheet == MAX_ROWS_PER_SHEET) {
+            endSheet();
+            startSheet();
+        }
+        writeCells(values, 0);
+    }
+    
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        endSheet();
+        writePart("[Content_Types].xml", contentTypes());
+        writePart("_rels/.rels",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">"
+            + "<Relationship Id=\"rId1\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument\" Target=\"xl/workbook.xml\"/>"
+            + "</Relationships>");
+        writePart("xl/workbook.xml", workbook());
+        writePart("xl/_rels/workbook.xml.rels", workbookRelationships());
+        writePart("xl/styles.xml",
+            "<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<styleSheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">"
+            + "<fonts count=\"2\"><font><sz val=\"11\"/><name val=\"Calibri\"/></font>"
+            + "<font><b/><sz val=\"11\"/><name val=\"Calibri\"/></font></fonts>"
+            + "<fills count=\"2\"><fill><patternFill patternType=\"none\"/></fill><fill><patternFill patternType=\"gray125\"/></fill></fills>"
+            + "<borders count=\"1\"><border><left/><right/><top/><bottom/><diagonal/></border></borders>"
+            + "<cellStyleXfs count=\"1\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\"/></cellStyleXfs>"
+            + "<cellXfs count=\"2\"><xf numFmtId=\"0\" fontId=\"0\" fillId=\"0\" borderId=\"0\" xfId=\"0\"/>"
+            + "<xf numFmtId=\"0\" fontId=\"1\" fillId=\"0\" borderId=\"0\" xfId=\"0\" applyFont=\"1\"/></cellXfs>"
+            + "</styleSheet>");
+        zip.close();
+    }
+    
+    private void startSheet() throws IOException {
+        sheetCount++;
+        rowInSheet = 0;
+        zip.putNextEntry(new ZipEntry("xl/worksheets/sheet" + sheetCount + ".xml"));
+        writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<worksheet xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+        if (header != null) {
+            writer.write("<sheetViews><sheetView workbookViewId=\"0\">"
+                + "<pane ySplit=\"1\" topLeftCell=\"A2\" activePane=\"bottomLeft\" state=\"frozen\"/>"
+                + "</sheetView></sheetViews>");
+        }
+        writer.write("<sheetData>");
+        if (header != null) {
+            writeCells(header, 1);
+        }
+    }
+    
+    private void endSheet() throws IOException {
+        writer.write("</sheetData></worksheet>");
+        writer.flush();
+        zip.closeEntry();
+    }
+    
+    private void writeCells(Object[] values, int style) throws IOException {
+        int row = ++rowInSheet;
+        writer.write("<row r=\"");
+        writer.write(Integer.toString(row));
+        writer.write("\">");
+        for (int column = 0; column < values.length; column++) {
+            Object value = values[column];
+            if (value == null) {
+                continue;
+            }
+            writer.write("<c r=\"");
+            writer.write(columnName(column));
+            writer.write(Integer.toString(row));
+            if (style != 0) {
+                writer.write("\" s=\"");
+                writer.write(Integer.toString(style));
+            }
+            if (value instanceof Number) {
+                writer.write("\"><v>");
+                writer.write(value instanceof BigDecimal ? ((BigDecimal) value).toPlainString() : value.toString());
+                writer.write("</v></c>");
+            } else {
+                writer.write("\" t=\"inlineStr\"><is><t xml:space=\"preserve\">");
+                writeEscaped(value.toString());
+                writer.write("</t></is></c>");
+            }
+        }
+        writer.write("</row>");
+    }
+    
+    private void writeEscaped(String text) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&': writer.write("&amp;"); break;
+                case '<': writer.write("&lt;"); break;
+                case '>': writer.write("&gt;"); break;
+                case '"': writer.write("&quot;"); break;
+                default:
+                    // Control characters other than tab and line breaks are not allowed in XML
+                    if (c >= 0x20 || c == '\t' || c == '\n' || c == '\r') {
+                        writer.write(c);
+                    }
+            }
+        }
+    }
+    
+    private void writePart(String name, String content) throws IOException {
+        zip.putNextEntry(new ZipEntry(name));
+        writer.write(content);
+        writer.flush();
+        zip.closeEntry();
+    }
+    
+    private String contentTypes() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Types xmlns=\"http://schemas.openxmlformats.org/package/2006/content-types\">"
+            + "<Default Extension=\"rels\" ContentType=\"application/vnd.openxmlformats-package.relationships+xml\"/>"
+            + "<Default Extension=\"xml\" ContentType=\"application/xml\"/>"
+            + "<Override PartName=\"/xl/workbook.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.sheet.main+xml\"/>"
+            + "<Override PartName=\"/xl/styles.xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.styles+xml\"/>");
+        for (int sheet = 1; sheet <= sheetCount; sheet++) {
+            xml.append("<Override PartName=\"/xl/worksheets/sheet").append(sheet)
+                .append(".xml\" ContentType=\"application/vnd.openxmlformats-officedocument.spreadsheetml.worksheet+xml\"/>");
+        }
+        return xml.append("</Types>").toString();
+    }
+    
+    private String workbook() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<workbook xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\" "
+            + "xmlns:r=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships\"><sheets>");
+        for (int sheet = 1; sheet <= sheetCount; sheet++) {
+            String name = sheetCount == 1 ? sheetName : sheetName + " " + sheet;
+            xml.append("<sheet name=\"").append(escapeAttribute(name)).append("\" sheetId=\"").append(sheet)
+                .append("\" r:id=\"rId").append(sheet).append("\"/>");
+        }
+        return xml.append("</sheets></workbook>").toString();
+    }
+    
+    private String workbookRelationships() {
+        StringBuilder xml = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\" standalone=\"yes\"?>\n"
+            + "<Relationships xmlns=\"http://schemas.openxmlformats.org/package/2006/relationships\">");
+        for (int sheet = 1; sheet <= sheetCount; sheet++) {
+            xml.append("<Relationship Id=\"rId").append(sheet)
+                .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/worksheet\" Target=\"worksheets/sheet")
+                .append(sheet).append(".xml\"/>");
+        }
+        int stylesId = sheetCount + 1;
+        xml.append("<Relationship Id=\"rId").append(stylesId)
+            .append("\" Type=\"http://schemas.openxmlformats.org/officeDocument/2006/relationships/styles\" Target=\"styles.xml\"/>");
+        return xml.append("</Relationships>").toString();
+    }
+    
+    private static String escapeAttribute(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+    
+    /**
+     * Spreadsheet column letters: 0 -> A, 25 -> Z, 26 -> AA
+     */
+    private static String columnName(int column) {
+        StringBuilder name = new StringBuilder();
+        for (int n = column + 1; n > 0; n = (n - 1) / 26) {
+            name.insert(0, (char) ('A' + (n - 1) % 26));
+        }
+        return name.toString();
+    }
+}
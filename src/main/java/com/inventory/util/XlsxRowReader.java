@@ -0,0 +1,228 @@
+package main.java.com.inventory.util;
+
+// package com.inventory.util;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * XlsxRowReader - Reads the first sheet of an Excel (.xlsx) file row by row
+ * Features:
+ * - Streams the sheet XML; only the shared string table is held in memory
+ * - Text, numbers and booleans come back as strings, as stored in the file
+ * - Gaps between cells are kept, so values stay in their columns
+ */
+public class XlsxRowReader implements AutoCloseable {
+    
+    private static final String MAIN_SHEET = "xl/worksheets/sheet1.xml";
+    
+    private final ZipFile zip;
+    private final InputStream sheetStream;
+    private final XMLStreamReader sheet;
+    private final List<String> sharedStrings;
+    private int rowNumber;
+    
+    public XlsxRowReader(Path file) throws IOException {
+        this.zip = new ZipFile(file.toFile());
+        try {
+            this.sharedStrings = readSharedStrings();
+            ZipEntry sheetEntry = firstSheet();
+            if (sheetEntry == null) {
+                throw new IOException("No worksheet found in " + file.getFileName());
+            }
+            this.sheetStream = zip.getInputStream(sheetEntry);
+            this.sheet = newFactory().createXMLStreamReader(sheetStream);
+        } catch (IOException | XMLStreamException | RuntimeException ex) {
+            zip.close();
+            throw ex instanceof IOException ? (IOException) ex : new IOException("Cannot read " + file.getFileName(), ex);
+        }
+    }
+    
+    /**
+     * Cells of the next non-empty row, or null at the end of the sheet
+     */
+    public String[] nextRow() throws IOException {
+        try {
+            while (sheet.hasNext()) {
+                if (sheet.next() == XMLStreamConstants.START_ELEMENT && "row".equals(sheet.getLocalName())) {
+                    String r = sheet.getAttributeValue(null, "r");
+                    rowNumber = r != null ? Integer.parseInt(r) : rowNumber + 1;
+                    String[] cells = readRow();
+                    if (cells.length > 0) {
+                        return cells;
+                    }
+                }
+            }
+            return null;
+        } catch (XMLStreamException | NumberFormatException ex) {
+            throw new IOException("Invalid worksheet near row " + rowNumber, ex);
+        }
+    }
+    
+    /**
+     * Spreadsheet row number (1-based) of the row last returned by nextRow()
+     */
+    public int getRowNumber() {
+        return rowNumber;
+    }
+    
+    @Override
+    public void close() throws IOException {
+        try {
+            sheet.close();
+        } catch (XMLStreamException ex) {
+            // Closing the zip below releases everything
+        }
+        sheetStream.close();
+        zip.close();
+    }
+    
+    private String[] readRow() throws XMLStreamException {
+        List<String> cells = new ArrayList<>();
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(sheet.getLocalName())) {
+                break;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(sheet.getLocalName())) {
+                String reference = sheet.getAttributeValue(null, "r");
+                String type = sheet.getAttributeValue(null, "t");
+                int column = reference != null ? columnIndex(reference) : cells.size();
+                String value = readCell(type);
+                while (cells.size() < column) {
+                    cells.add("");
+                }
+                cells.add(value);
+            }
+        }
+        return cells.toArray(new String[0]);
+    }
+    
+    /**
+     * Value of the current cell; stops at its end tag
+     */
+    private String readCell(String type) throws XMLStreamException {
+        StringBuilder value = new StringBuilder();
+        boolean inValue = false;
+        while (sheet.hasNext()) {
+            int event = sheet.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = sheet.getLocalName();
+                inValue = "v".equals(name) || "t".equals(name);
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if ("c".equals(sheet.getLocalName())) {
+                    break;
+                }
+                inValue = false;
+            } else if (inValue && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                value.append(sheet.getText());
+            }
+        }
+        if ("s".equals(type)) {
+            int index = Integer.parseInt(value.toString().trim());
+            return index < sharedStrings.size() ? sharedStrings.get(index) : "";
+        }
+        if ("b".equals(type)) {
+            return "1".equals(value.toString()) ? "TRUE" : "FALSE";
+        }
+        return value.toString();
+    }
+    
+    private List<String> readSharedStrings() throws IOException, XMLStreamException {
+        List<String> strings = new ArrayList<>();
+        ZipEntry entry = zip.getEntry("xl/sharedStrings.xml");
+        if (entry == null) {
+            return strings;
+        }
+        try (InputStream in = zip.getInputStream(entry)) {
+            XMLStreamReader xml = newFactory().createXMLStreamReader(in);
+            StringBuilder text = null;
+            boolean inText = false;
+            while (xml.hasNext()) {
+                int event = xml.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    if ("si".equals(xml.getLocalName())) {
+                        text = new StringBuilder();
+                    } else if ("t".equals(xml.getLocalName())) {
+                        inText = true;
+                    } else if ("rPh".equals(xml.getLocalName())) {
+                        // Phonetic hints are not part of the text
+                        skipElement(xml);
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    if ("si".equals(xml.getLocalName()) && text != null) {
+                        strings.add(text.toString());
+                        text = null;
+                    } else if ("t".equals(xml.getLocalName())) {
+                        inText = false;
+                    }
+                } else if (inText && text != null
+                        && (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA)) {
+                    text.append(xml.getText());
+                }
+            }
+            xml.close();
+        }
+        return strings;
+    }
+    
+    private ZipEntry firstSheet() {
+        ZipEntry entry = zip.getEntry(MAIN_SHEET);
+        if (entry != null) {
+            return entry;
+        }
+        Enumeration<? extends ZipEntry> entries = zip.entries();
+        while (entries.hasMoreElements()) {
+            ZipEntry candidate = entries.nextElement();
+            if (candidate.getName().startsWith("xl/worksheets/") && candidate.getName().endsWith(".xml")) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+    
+    private static void skipElement(XMLStreamReader xml) throws XMLStreamException {
+        int depth = 1;
+        while (depth > 0 && xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+    
+    private static XMLInputFactory newFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        // Spreadsheets never need DTDs or external entities
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+    
+    /**
+     * Column of a cell reference: "A1" -> 0, "AB7" -> 27
+     */
+    private static int columnIndex(String reference) {
+        int column = 0;
+        for (int i = 0; i < reference.length(); i++) {
+            char c = reference.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            column = column * 26 + (c - 'A' + 1);
+        }
+        return column - 1;
+    }
+}
@@ -4,8 +4,10 @@ package main.java.com.inventory.view;
 // package com.inventory.view;
 
 import com.inventory.model.User;
+import com.inventory.service.CustomerImporter;
 import com.inventory.view.sales.SalesPanel;
 import com.inventory.view.customer.CustomerPanel;
+import com.inventory.view.customer.CustomerImportWorker;
 import com.inventory.view.invoice.InvoiceListPanel;
 import com.inventory.view.supplier.SupplierPanel;
 import com.inventory.view.product.ProductPanel;
@@ -18,6 +20,7 @@ import com.inventory.view.reports.ReportsPanel;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -383,6 +386,8 @@ public class MainFrame extends JFrame {
         JMenuItem itemImport = new JMenuItem("Import Data");
         JMenuItem itemExport = new JMenuItem("Export Data");
         
+        itemImport.addActionListener(e -> importCustomers());
+        
         menuOthers.add(itemBackup);
         menuOthers.add(itemRestore);
         menuOthers.addSeparator();
@@ -506,6 +511,16 @@ public class MainFrame extends JFrame {
         }
     }
     
+    private void importCustomers() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Import Customers");
+        fileChooser.setFileFilter(new FileNameExtensionFilter("Customer lists (*.csv, *.xlsx)", "csv", "xlsx"));
+        
+        if (fileChooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+            new CustomerImportWorker(this, CustomerImporter.create(), fileChooser.getSelectedFile()).start();
+        }
+    }
+    
     private void showAboutDialog() {
         JDialog aboutDialog = new JDialog(this, "About Inventory Management System", true);
         aboutDialog.setLayout(new BorderLayout(10, 10));
@@ -0,0 +1,125 @@
+package main.java.com.inventory.view.components;
+
+// package com.inventory.view.components;
+
+import com.inventory.service.ReportDocument;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * ReportViewerDialog - Shows a text report one page at a time
+ * Features:
+ * - Only the page on screen is rendered and held in memory
+ * - Previous / Next page navigation
+ * - Save the whole report to a text file, written page by page in the background
+ */
+public class ReportViewerDialog extends JDialog {
+    
+    private final ReportDocument report;
+    private final JTextArea txtReport;
+    private final JLabel lblPage;
+    private final JButton btnPrevious;
+    private final JButton btnNext;
+    private int currentPage;
+    
+    public ReportViewerDialog(Window owner, ReportDocument report) {
+        super(owner, report.getTitle(), ModalityType.APPLICATION_MODAL);
+        this.report = report;
+        setLayout(new BorderLayout());
+        
+        txtReport = new JTextArea();
+        txtReport.setEditable(false);
+        txtReport.setFont(new Font("Courier New", Font.PLAIN, 12));
+        txtReport.setMargin(new Insets(10, 10, 10, 10));
+        add(new JScrollPane(txtReport), BorderLayout.CENTER);
+        
+        btnPrevious = new JButton("< Previous");
+        btnNext = new JButton("Next >");
+        lblPage = new JLabel();
+        JButton btnSave = new JButton("Save as Text");
+        JButton btnClose = new JButton("Close");
+        
+        btnPrevious.addActionListener(e -> showPage(currentPage - 1));
+        btnNext.addActionListener(e -> showPage(currentPage + 1));
+        btnSave.addActionListener(e -> saveAsText());
+        btnClose.addActionListener(e -> dispose());
+        
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
+        buttonPanel.add(btnPrevious);
+        buttonPanel.add(lblPage);
+        buttonPanel.add(btnNext);
+        buttonPanel.add(Box.createHorizontalStrut(20));
+        buttonPanel.add(btnSave);
+        buttonPanel.add(btnClose);
+        add(buttonPanel, BorderLayout.SOUTH);
+        
+        setSize(800, 600);
+        setLocationRelativeTo(owner);
+        showPage(0);
+    }
+    
+    private void showPage(int page) {
+        StringBuilder text = new StringBuilder(16 * 1024);
+        try {
+            report.writePage(page, text);
+        } catch (IOException ex) {
+            // A StringBuilder does not throw
+            throw new IllegalStateException(ex);
+        }
+        currentPage = page;
+        txtReport.setText(text.toString());
+        txtReport.setCaretPosition(0);
+        
+        int pageCount = report.getPageCount();
+        lblPage.setText("Page " + (page + 1) + " of " + pageCount);
+        btnPrevious.setEnabled(page > 0);
+        btnNext.setEnabled(page < pageCount - 1);
+    }
+    
+    private void saveAsText() {
+        JFileChooser fileChooser = new JFileChooser();
+        fileChooser.setDialogTitle("Save Report");
+        fileChooser.setSelectedFile(new File(report.getTitle().replaceAll("[^A-Za-z0-9]+", "") + ".txt"));
+        if (fileChooser.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = fileChooser.getSelectedFile();
+        
+        setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() throws IOException {
+                try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                    report.writeTo(out);
+                }
+                return null;
+            }
+            
+            @Override
+            protected void done() {
+                setCursor(Cursor.getDefaultCursor());
+                try {
+                    get();
+                    JOptionPane.showMessageDialog(ReportViewerDialog.this,
+                        "Report saved successfully!",
+                        "Save Success",
+                        JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | ExecutionException ex) {
+                    ex.printStackTrace();
+                    Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+                    JOptionPane.showMessageDialog(ReportViewerDialog.this,
+                        "Error saving report: " + cause.getMessage(),
+                        "Save Error",
+                        JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+}
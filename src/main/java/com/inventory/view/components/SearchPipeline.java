@@ -0,0 +1,129 @@
+package main.java.com.inventory.view.components;
+
+// package com.inventory.view.components;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * SearchPipeline - Search-as-you-type for a text field
+ * Features:
+ * - Waits for a quiet period, so a burst of keystrokes or a paste runs one search
+ * - Runs the search off the event dispatch thread
+ * - Only the newest search is applied; older ones still queued or running are dropped
+ * - Result is handed to the screen on the event dispatch thread
+ *
+ * Usage:
+ *   SearchPipeline<List<Product>> search = new SearchPipeline<>(250,
+ *       text -> productService.search(text), this::showProducts);
+ *   search.attach(txtSearch);
+ *
+ * All methods must be called on the event dispatch thread.
+ */
+public class SearchPipeline<T> {
+    
+    // Shared by all search fields; a search only runs once typing pauses
+    private static final ExecutorService SEARCHER = Executors.newFixedThreadPool(2, r -> {
+        Thread thread = new Thread(r, "search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final Function<String, T> query;
+    private final Consumer<T> resultHandler;
+    private final Timer quietTimer;
+    
+    private JTextComponent field;
+    private Future<?> running;
+    
+    // Changed for every search and cancel; results of older searches are dropped
+    private volatile int generation;
+    
+    /**
+     * @param quietPeriodMs time without typing before the search runs
+     * @param query         runs on a background thread with the trimmed field text
+     * @param resultHandler receives the result on the event dispatch thread
+     */
+    public SearchPipeline(int quietPeriodMs, Function<String, T> query, Consumer<T> resultHandler) {
+        this.query = query;
+        this.resultHandler = resultHandler;
+        this.quietTimer = new Timer(quietPeriodMs, e -> searchNow());
+        this.quietTimer.setRepeats(false);
+    }
+    
+    /**
+     * Search whenever the text of the field changes
+     */
+    public void attach(JTextComponent field) {
+        this.field = field;
+        field.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                quietTimer.restart();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                quietTimer.restart();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+                quietTimer.restart();
+            }
+        });
+    }
+    
+    /**
+     * Search the current text right away (Enter, Search button, Refresh)
+     */
+    public void searchNow() {
+        quietTimer.stop();
+        cancelRunning();
+        
+        String text = field != null ? field.getText().trim() : "";
+        int searchGeneration = ++generation;
+        running = SEARCHER.submit(() -> {
+            if (searchGeneration != generation) {
+                return;
+            }
+            T result;
+            try {
+                result = query.apply(text);
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (searchGeneration == generation) {
+                    resultHandler.accept(result);
+                }
+            });
+        });
+    }
+    
+    /**
+     * Drop the pending and running search, e.g. when the screen is closed
+     */
+    public void cancel() {
+        quietTimer.stop();
+        cancelRunning();
+        generation++;
+    }
+    
+    private void cancelRunning() {
+        if (running != null) {
+            // No interrupt: a database call in progress finishes, its result is ignored
+            running.cancel(false);
+            running = null;
+        }
+    }
+}
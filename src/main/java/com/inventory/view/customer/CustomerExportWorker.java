@@ -0,0 +1,140 @@
+package main.java.com.inventory.view.customer;
+
+// package com.inventory.view.customer;
+
+import com.inventory.model.Customer;
+import com.inventory.service.DatabaseCustomerPageSource;
+import com.inventory.util.StreamingXlsxWriter;
+
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingWorker;
+import java.awt.Component;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * CustomerExportWorker - Writes the customer list to an Excel file in the background
+ * Features:
+ * - Customers are read a page at a time and written straight to the file,
+ *   so memory use stays flat however many customers there are
+ * - Pages continue after the last ID written instead of using OFFSET, so
+ *   the last page is read as fast as the first
+ * - Progress dialog with Cancel
+ * - The target file is only replaced once the export is complete
+ */
+public class CustomerExportWorker extends SwingWorker<Integer, Void> {
+    
+    private static final int PAGE_SIZE = 1000;
+    
+    private static final String[] HEADER = {
+        "ID", "Customer Name", "Office/Office No", "Contact Person",
+        "Billing Address", "Shipping Address", "City", "Bank", "Account No",
+        "Email", "Phone", "Mobile Number", "Private Note", "Online",
+        "Other Info", "Private", "Arrears"
+    };
+    
+    private final Component parent;
+    private final DatabaseCustomerPageSource source;
+    private final File file;
+    private final ProgressMonitor progressMonitor;
+    
+    public CustomerExportWorker(Component parent, DatabaseCustomerPageSource source, File file) {
+        this.parent = parent;
+        this.source = source;
+        this.file = file;
+        this.progressMonitor = new ProgressMonitor(parent, "Exporting customers to " + file.getName(), "", 0, 100);
+        this.progressMonitor.setMillisToDecideToPopup(200);
+        addPropertyChangeListener(e -> {
+            if ("progress".equals(e.getPropertyName())) {
+                progressMonitor.setProgress((Integer) e.getNewValue());
+                if (progressMonitor.isCanceled()) {
+                    cancel(false);
+                }
+            }
+        });
+    }
+    
+    @Override
+    protected Integer doInBackground() throws IOException {
+        int total = source.getCustomerCount();
+        File partial = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".part");
+        int written = 0;
+        String lastId = null;
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(partial.toPath()));
+                 StreamingXlsxWriter xlsx = new StreamingXlsxWriter(out, "Customers", HEADER)) {
+                while (!isCancelled()) {
+                    List<Customer> page = source.getCustomersAfter(lastId, PAGE_SIZE);
+                    for (Customer customer : page) {
+                        xlsx.writeRow(row(customer));
+                        lastId = customer.getId();
+                    }
+                    written += page.size();
+                    if (total > 0) {
+                        setProgress(Math.min(99, (int) (written * 100L / total)));
+                    }
+                    if (page.size() < PAGE_SIZE) {
+                        break;
+                    }
+                }
+            }
+            if (!isCancelled()) {
+                Files.move(partial.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(partial.toPath());
+        }
+        return written;
+    }
+    
+    @Override
+    protected void done() {
+        progressMonitor.close();
+        try {
+            int written = get();
+            JOptionPane.showMessageDialog(parent,
+                written + " customers exported successfully!",
+                "Export Success",
+                JOptionPane.INFORMATION_MESSAGE);
+        } catch (CancellationException ex) {
+            // Cancelled from the progress dialog; the partial file is gone
+        } catch (InterruptedException | ExecutionException ex) {
+            ex.printStackTrace();
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            JOptionPane.showMessageDialog(parent,
+                "Error exporting to Excel: " + cause.getMessage(),
+                "Export Error",
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private static Object[] row(Customer customer) {
+        return new Object[] {
+            customer.getId(),
+            customer.getName(),
+            customer.getOfficeNumber(),
+            customer.getContactPerson(),
+            customer.getBillingAddress(),
+            customer.getShippingAddress(),
+            customer.getCity(),
+            customer.getBankName(),
+            customer.getAccountNumber(),
+            customer.getEmail(),
+            customer.getPhone(),
+            customer.getMobileNumber(),
+            customer.getPrivateNote(),
+            customer.getOnlineInfo(),
+            customer.getOtherInfo(),
+            customer.isPrivate() ? "Yes" : "No",
+            customer.getArrears()
+        };
+    }
+}
@@ -0,0 +1,146 @@
+package main.java.com.inventory.view.customer;
+
+// package com.inventory.view.customer;
+
+import com.inventory.service.CustomerImporter;
+import com.inventory.service.CustomerImporter.ImportResult;
+import com.inventory.service.CustomerImporter.RowError;
+
+import javax.swing.BorderFactory;
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.WindowConstants;
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.FlowLayout;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * CustomerImportWorker - Imports customers from a CSV or Excel file in the background
+ * Features:
+ * - Progress dialog with the number of rows handled and a Cancel button
+ * - Rejected rows are written to "<file>-errors.csv" next to the imported file
+ * - Summary of imported and rejected rows when done
+ */
+public class CustomerImportWorker extends SwingWorker<ImportResult, Integer> {
+    
+    private final Component parent;
+    private final CustomerImporter importer;
+    private final File file;
+    private final JDialog progressDialog;
+    private final JLabel lblProgress;
+    
+    private File errorFile;
+    
+    public CustomerImportWorker(Component parent, CustomerImporter importer, File file) {
+        this.parent = parent;
+        this.importer = importer;
+        this.file = file;
+        
+        this.progressDialog = new JDialog(SwingUtilities.getWindowAncestor(parent), "Importing Customers");
+        this.lblProgress = new JLabel("Reading " + file.getName() + "...");
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+        JButton btnCancel = new JButton("Cancel");
+        btnCancel.addActionListener(e -> cancel(true));
+        
+        JPanel contentPanel = new JPanel(new BorderLayout(10, 10));
+        contentPanel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        contentPanel.add(lblProgress, BorderLayout.NORTH);
+        contentPanel.add(progressBar, BorderLayout.CENTER);
+        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        buttonPanel.add(btnCancel);
+        contentPanel.add(buttonPanel, BorderLayout.SOUTH);
+        
+        progressDialog.setContentPane(contentPanel);
+        progressDialog.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+        progressDialog.setSize(350, 140);
+        progressDialog.setLocationRelativeTo(parent);
+    }
+    
+    /**
+     * Show the progress dialog and start importing
+     */
+    public void start() {
+        progressDialog.setVisible(true);
+        execute();
+    }
+    
+    @Override
+    protected ImportResult doInBackground() throws IOException, InterruptedException {
+        ImportResult result = importer.importFile(file.toPath(), this::publish);
+        if (!result.getErrors().isEmpty()) {
+            errorFile = new File(file.getAbsoluteFile().getParentFile(), baseName(file) + "-errors.csv");
+            writeErrors(result.getErrors(), errorFile);
+        }
+        return result;
+    }
+    
+    @Override
+    protected void process(List<Integer> chunks) {
+        lblProgress.setText(chunks.get(chunks.size() - 1) + " rows checked...");
+    }
+    
+    @Override
+    protected void done() {
+        progressDialog.dispose();
+        try {
+            ImportResult result = get();
+            StringBuilder message = new StringBuilder();
+            message.append(result.getImportedCount()).append(" of ").append(result.getRowCount())
+                .append(" customers imported successfully!");
+            if (!result.getErrors().isEmpty()) {
+                message.append("\n\n").append(result.getErrors().size()).append(" rows were not imported.");
+                message.append("\nSee ").append(errorFile.getAbsolutePath()).append(" for details.");
+            }
+            JOptionPane.showMessageDialog(parent,
+                message.toString(),
+                "Import Complete",
+                result.getErrors().isEmpty() ? JOptionPane.INFORMATION_MESSAGE : JOptionPane.WARNING_MESSAGE);
+        } catch (CancellationException ex) {
+            JOptionPane.showMessageDialog(parent,
+                "Import cancelled. Customers saved before cancelling were kept.",
+                "Import Cancelled",
+                JOptionPane.INFORMATION_MESSAGE);
+        } catch (InterruptedException | ExecutionException ex) {
+            ex.printStackTrace();
+            Throwable cause = ex.getCause() != null ? ex.getCause() : ex;
+            JOptionPane.showMessageDialog(parent,
+                "Error importing customers: " + cause.getMessage(),
+                "Import Error",
+                JOptionPane.ERROR_MESSAGE);
+        }
+    }
+    
+    private static void writeErrors(List<RowError> errors, File errorFile) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(errorFile.toPath(), StandardCharsets.UTF_8)) {
+            writer.write("Row,Error");
+            writer.newLine();
+            for (RowError error : errors) {
+                writer.write(Integer.toString(error.getRow()));
+                writer.write(',');
+                writer.write('"' + error.getMessage().replace("\"", "\"\"") + '"');
+                writer.newLine();
+            }
+        }
+    }
+    
+    private static String baseName(File file) {
+        String name = file.getName();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? name.substring(0, dot) : name;
+    }
+}
@@ -5,16 +5,25 @@ package main.java.com.inventory.view.customer;
 
 import com.inventory.controller.CustomerController;
 import com.inventory.model.Customer;
+import com.inventory.service.CustomerArrearsLedger;
+import com.inventory.service.CustomerIdPageSource;
+import com.inventory.service.CustomerPageSource;
+import com.inventory.service.CustomerRepository;
+import com.inventory.service.CustomerRepository.CustomerChange;
+import com.inventory.service.CustomerRepository.CustomerChangeListener;
+import com.inventory.service.CustomerSearchIndex;
 import com.inventory.service.CustomerService;
+import com.inventory.service.DatabaseCustomerPageSource;
+import com.inventory.util.Money;
 import com.inventory.view.components.CustomButton;
 import com.inventory.view.components.CustomTable;
+import com.inventory.view.components.SearchPipeline;
 import com.inventory.view.components.SearchTextField;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
-import javax.swing.table.DefaultTableModel;
-import javax.swing.table.TableRowSorter;
+import javax.swing.event.RowSorterEvent;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -24,7 +33,7 @@ import java.util.List;
  * CustomerPanel - Main panel for customer management
  * Features:
  * - Display all customers in a table
- * - Search customers by name, contact, city
+ * - Search customers by name, phone, email, city or account number (in-memory index)
  * - Add new customers
  * - Edit existing customers
  * - View customer details
@@ -33,17 +42,30 @@ import java.util.List;
  */
 public class CustomerPanel extends JPanel {
     
+    private static final int SEARCH_QUIET_PERIOD_MS = 250;
+    
     private CustomerController customerController;
     private CustomerService customerService;
+    private CustomerArrearsLedger arrearsLedger;
+    private CustomerSearchIndex searchIndex;
+    private CustomerRepository customerRepository;
+    private CustomerChangeListener customerListener;
+    
+    // Repository version the table was last loaded at
+    private long loadedVersion;
     
     // Search Components
     private SearchTextField txtSearch;
+    private SearchPipeline<CustomerPageSource> searchPipeline;
     private JButton btnSearch;
     
     // Table Components
     private CustomTable tblCustomers;
-    private DefaultTableModel tableModel;
-    private TableRowSorter<DefaultTableModel> sorter;
+    private PagedCustomerTableModel tableModel;
+    private ServerSideRowSorter<PagedCustomerTableModel> sorter;
+    
+    // Column the list is sorted by; read by the search thread
+    private volatile RowSorter.SortKey sortKey;
     
     // Action Buttons
     private CustomButton btnAddCustomer;
@@ -68,6 +90,30 @@ public class CustomerPanel extends JPanel {
     private void initializeServices() {
         this.customerController = new CustomerController();
         this.customerService = new CustomerService();
+        this.arrearsLedger = CustomerArrearsLedger.getInstance();
+        this.searchIndex = CustomerSearchIndex.getInstance();
+        this.customerRepository = CustomerRepository.getInstance();
+        
+        // Changes made on any screen are applied to the table row by row
+        this.customerListener = new CustomerChangeListener() {
+            @Override
+            public void customerChanged(CustomerChange change) {
+                onEventDispatchThread(() -> applyCustomerChange(change));
+            }
+            
+            @Override
+            public void customersChanged(List<CustomerChange> changes) {
+                onEventDispatchThread(() -> applyCustomerChanges(changes));
+            }
+            
+            @Override
+            public void arrearsChanged(String customerId, long arrears) {
+                onEventDispatchThread(() -> tableModel.arrearsChanged(customerId));
+            }
+        };
+        
+        // Searches go to the database until the index is built
+        searchIndex.buildInBackground();
     }
     
     private void initializeComponents() {
@@ -144,28 +190,9 @@ public class CustomerPanel extends JPanel {
             new EmptyBorder(10, 10, 10, 10)
         ));
         
-        // Create table columns based on the screenshots
-        String[] columns = {
-            "ID", "Customer Name", "Office/Office No", "Customer Contact Person",
-            "Billing Address", "Shipping Address", "City", "Bank", "Account No",
-            "Contact Person", "Person Email", "Person Phone", "Mobile Number",
-            "Private Note", "Online", "Other Info", "Private", "Arrears"
-        };
-        
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) {
-                return false;
-            }
-            
-            @Override
-            public Class<?> getColumnClass(int columnIndex) {
-                if (columnIndex == 17) { // Arrears column
-                    return Double.class;
-                }
-                return String.class;
-            }
-        };
+        // Columns based on the screenshots; rows are loaded page by page while scrolling
+        tableModel = new PagedCustomerTableModel(arrearsLedger, customerRepository);
+        tableModel.addTableModelListener(e -> updateCustomerCount());
         
         tblCustomers = new CustomTable(tableModel);
         tblCustomers.setRowHeight(35);
@@ -184,8 +211,8 @@ public class CustomerPanel extends JPanel {
         tblCustomers.getColumnModel().getColumn(12).setPreferredWidth(120); // Mobile
         tblCustomers.getColumnModel().getColumn(17).setPreferredWidth(100); // Arrears
         
-        // Enable sorting
-        sorter = new TableRowSorter<>(tableModel);
+        // Sorting: header clicks reload the rows in the new order from the database
+        sorter = new ServerSideRowSorter<>(tableModel, column -> PagedCustomerTableModel.getSortKey(column) != null);
         tblCustomers.setRowSorter(sorter);
         
         // Selection mode
@@ -267,11 +294,18 @@ public class CustomerPanel extends JPanel {
         txtSearch.addActionListener(e -> performSearch());
         btnSearch.addActionListener(e -> performSearch());
         
-        // Add real-time search
-        txtSearch.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
-            public void changedUpdate(javax.swing.event.DocumentEvent e) { performSearch(); }
-            public void removeUpdate(javax.swing.event.DocumentEvent e) { performSearch(); }
-            public void insertUpdate(javax.swing.event.DocumentEvent e) { performSearch(); }
+        // Add real-time search, once typing pauses
+        searchPipeline = new SearchPipeline<>(SEARCH_QUIET_PERIOD_MS,
+            this::createCustomerSource, tableModel::setSource);
+        searchPipeline.attach(txtSearch);
+        
+        // Column sort
+        sorter.addRowSorterListener(e -> {
+            if (e.getType() == RowSorterEvent.Type.SORT_ORDER_CHANGED) {
+                List<? extends RowSorter.SortKey> keys = sorter.getSortKeys();
+                sortKey = keys.isEmpty() ? null : keys.get(0);
+                loadCustomerData();
+            }
         });
         
         // Table selection listener
@@ -302,74 +336,122 @@ public class CustomerPanel extends JPanel {
     }
     
     private void loadCustomerData() {
-        try {
-            // Clear existing data
-            tableModel.setRowCount(0);
-            
-            // Load customers from database
-            List<Customer> customers = customerService.getAllCustomers();
-            
-            // Populate table
-            for (Customer customer : customers) {
-                Object[] rowData = {
-                    customer.getId(),
-                    customer.getName(),
-                    customer.getOfficeNumber(),
-                    customer.getContactPerson(),
-                    customer.getBillingAddress(),
-                    customer.getShippingAddress(),
-                    customer.getCity(),
-                    customer.getBankName(),
-                    customer.getAccountNumber(),
-                    customer.getContactPerson(),
-                    customer.getEmail(),
-                    customer.getPhone(),
-                    customer.getMobileNumber(),
-                    customer.getPrivateNote(),
-                    customer.getOnlineInfo(),
-                    customer.getOtherInfo(),
-                    customer.isPrivate() ? "Yes" : "No",
-                    customer.getArrears() != null ? customer.getArrears().doubleValue() : 0.0
-                };
-                tableModel.addRow(rowData);
+        loadedVersion = customerRepository.getVersion();
+        searchPipeline.searchNow();
+    }
+    
+    /**
+     * Update the rows touched by one change. Falls back to a reload when a
+     * change was missed or cannot be placed in the loaded rows.
+     */
+    private void applyCustomerChange(CustomerChange change) {
+        if (change.getVersion() <= loadedVersion) {
+            // Already part of the last load
+            return;
+        }
+        boolean applied = change.getVersion() == loadedVersion + 1;
+        if (applied) {
+            switch (change.getType()) {
+                case ADDED:
+                    // Search results only hold matching customers; search again instead
+                    applied = txtSearch.getText().trim().isEmpty() && tableModel.customerAdded(change.getCustomer());
+                    break;
+                case UPDATED:
+                    tableModel.customerUpdated(change.getCustomer());
+                    if (selectedCustomer != null && selectedCustomer.getId().equals(change.getCustomerId())) {
+                        selectedCustomer = change.getCustomer();
+                    }
+                    break;
+                case REMOVED:
+                    applied = tableModel.customerRemoved(change.getCustomerId());
+                    break;
             }
-            
-            // Update count
-            updateCustomerCount();
-            
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this,
-                "Error loading customer data: " + ex.getMessage(),
-                "Load Error",
-                JOptionPane.ERROR_MESSAGE);
+        }
+        if (applied) {
+            loadedVersion = change.getVersion();
+        } else {
+            loadCustomerData();
         }
     }
     
-    private void performSearch() {
-        String searchText = txtSearch.getText().trim().toLowerCase();
-        
-        if (searchText.isEmpty()) {
-            sorter.setRowFilter(null);
+    /**
+     * Many changes at once, e.g. an import chunk: one reload instead of a
+     * table event per customer
+     */
+    private void applyCustomerChanges(List<CustomerChange> changes) {
+        if (changes.get(changes.size() - 1).getVersion() > loadedVersion) {
+            loadCustomerData();
+        }
+    }
+    
+    private static void onEventDispatchThread(Runnable task) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            task.run();
         } else {
-            sorter.setRowFilter(RowFilter.regexFilter("(?i)" + searchText));
+            SwingUtilities.invokeLater(task);
+        }
+    }
+    
+    /**
+     * Customers matching the search text; runs on the search thread
+     */
+    private CustomerPageSource createCustomerSource(String searchText) {
+        RowSorter.SortKey sort = sortKey;
+        if (sort == null || sort.getSortOrder() == SortOrder.UNSORTED) {
+            if (!searchText.isEmpty() && searchIndex.isReady()) {
+                return new CustomerIdPageSource(customerService, searchIndex.search(searchText));
+            }
+            return new DatabaseCustomerPageSource(customerService, searchText);
         }
+        // Sorted lists, searched or not, are ordered by the database
+        return new DatabaseCustomerPageSource(customerService, searchText,
+            PagedCustomerTableModel.getSortKey(sort.getColumn()), sort.getSortOrder() == SortOrder.ASCENDING);
+    }
+    
+    @Override
+    public void removeNotify() {
+        // Panel left: stop searching and loading pages nobody will look at
+        customerRepository.removeChangeListener(customerListener);
+        searchPipeline.cancel();
+        tableModel.cancelPending();
+        super.removeNotify();
+    }
+    
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        customerRepository.addChangeListener(customerListener);
         
-        updateCustomerCount();
+        // Customers changed while the panel was hidden
+        if (customerRepository.getVersion() != loadedVersion) {
+            loadCustomerData();
+        } else {
+            tableModel.resumePending();
+        }
+    }
+    
+    private void performSearch() {
+        // Matching IDs come from the search index; the table only loads the visible pages
+        loadCustomerData();
     }
     
     private void onCustomerSelected() {
         int selectedRow = tblCustomers.getSelectedRow();
         
-        if (selectedRow >= 0) {
-            // Convert view index to model index (important when sorting/filtering)
-            int modelRow = tblCustomers.convertRowIndexToModel(selectedRow);
-            
-            // Get customer ID
-            String customerId = tableModel.getValueAt(modelRow, 0).toString();
-            
-            // Load selected customer
-            selectedCustomer = customerService.getCustomerById(customerId);
+        Customer rowCustomer = selectedRow >= 0 ? tableModel.getCustomerAt(selectedRow) : null;
+        
+        if (rowCustomer != null && tableModel.isStale(selectedRow)) {
+            // Changed since the row was read; fetch it once and keep it in the table
+            Customer current = customerService.getCustomerById(rowCustomer.getId());
+            if (current != null) {
+                tableModel.customerUpdated(current);
+                rowCustomer = current;
+            }
+        }
+        
+        if (rowCustomer != null) {
+            // The table holds the current customer; no need to ask the database
+            selectedCustomer = rowCustomer;
             
             // Enable action buttons
             btnEditCustomer.setEnabled(true);
@@ -392,9 +474,9 @@ public class CustomerPanel extends JPanel {
         
         dialog.setVisible(true);
         
-        // Refresh table if customer was added
+        // Other screens and the table pick up the new customer from the repository
         if (dialog.isCustomerSaved()) {
-            loadCustomerData();
+            customerRepository.customerAdded(dialog.getSavedCustomer());
         }
     }
     
@@ -407,17 +489,19 @@ public class CustomerPanel extends JPanel {
             return;
         }
         
+        // The dialog writes its fields into the customer; the selected one is
+        // shared with the table and the repository snapshot, so edit a copy
         CustomerFormDialog dialog = new CustomerFormDialog(
             (Frame) SwingUtilities.getWindowAncestor(this),
             "Edit Customer",
-            selectedCustomer
+            CustomerRepository.copyOf(selectedCustomer)
         );
         
         dialog.setVisible(true);
         
-        // Refresh table if customer was updated
+        // Other screens and the table pick up the change from the repository
         if (dialog.isCustomerSaved()) {
-            loadCustomerData();
+            customerRepository.customerUpdated(dialog.getSavedCustomer());
         }
     }
     
@@ -442,12 +526,13 @@ public class CustomerPanel extends JPanel {
                 boolean deleted = customerController.deleteCustomer(selectedCustomer.getId());
                 
                 if (deleted) {
+                    customerRepository.customerRemoved(selectedCustomer.getId());
+                    
                     JOptionPane.showMessageDialog(this,
                         "Customer deleted successfully!",
                         "Delete Success",
                         JOptionPane.INFORMATION_MESSAGE);
                     
-                    loadCustomerData();
                     selectedCustomer = null;
                 } else {
                     JOptionPane.showMessageDialog(this,
@@ -503,8 +588,7 @@ public class CustomerPanel extends JPanel {
         addDetailRow(detailsPanel, "Shipping Address:", selectedCustomer.getShippingAddress());
         addDetailRow(detailsPanel, "Bank:", selectedCustomer.getBankName());
         addDetailRow(detailsPanel, "Account No:", selectedCustomer.getAccountNumber());
-        addDetailRow(detailsPanel, "Arrears:", selectedCustomer.getArrears() != null ? 
-                    selectedCustomer.getArrears().toString() : "0.00");
+        addDetailRow(detailsPanel, "Arrears:", Money.format(arrearsLedger.getArrears(selectedCustomer.getId())));
         
         JScrollPane scrollPane = new JScrollPane(detailsPanel);
         detailsDialog.add(scrollPane, BorderLayout.CENTER);
@@ -555,17 +639,8 @@ public class CustomerPanel extends JPanel {
             if (result == JFileChooser.APPROVE_OPTION) {
                 java.io.File file = fileChooser.getSelectedFile();
                 
-                // Export to Excel
-                com.inventory.util.ExcelExporter exporter = new com.inventory.util.ExcelExporter();
-                exporter.exportCustomerList(
-                    customerService.getAllCustomers(),
-                    file.getAbsolutePath()
-                );
-                
-                JOptionPane.showMessageDialog(this,
-                    "Customer list exported successfully!",
-                    "Export Success",
-                    JOptionPane.INFORMATION_MESSAGE);
+                // Export to Excel in the background, streaming from the database
+                new CustomerExportWorker(this, new DatabaseCustomerPageSource(customerService, null), file).execute();
             }
         } catch (Exception ex) {
             ex.printStackTrace();
@@ -577,12 +652,11 @@ public class CustomerPanel extends JPanel {
     }
     
     private void updateCustomerCount() {
-        int visibleRows = tblCustomers.getRowCount();
         int totalRows = tableModel.getRowCount();
         
-        String countText = visibleRows == totalRows ?
+        String countText = txtSearch.getText().trim().isEmpty() ?
             "Total Customers: " + totalRows :
-            "Showing " + visibleRows + " of " + totalRows + " customers";
+            "Found " + totalRows + " customers";
         
         // Update count label (would need reference to the label)
         // lblCount.setText(countText);
@@ -3,17 +3,28 @@ package main.java.com.inventory.view.customer;
 //package com.inventory.view.customer;
 
 import com.inventory.model.Customer;
+import com.inventory.service.CustomerNameIndex;
+import com.inventory.service.CustomerArrearsLedger;
+import com.inventory.service.CustomerRepository;
+import com.inventory.service.ReportCache;
+import com.inventory.service.ReportCache.Source;
 import com.inventory.service.CustomerService;
+import com.inventory.service.ReportDocument;
 import com.inventory.service.ReportService;
+import com.inventory.util.Money;
 import com.inventory.util.PDFGenerator;
 import com.inventory.view.components.DatePicker;
+import com.inventory.view.components.ReportViewerDialog;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
 import java.awt.*;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * CustomerReportDialog - Generate various customer reports
@@ -29,8 +40,20 @@ import java.util.List;
  */
 public class CustomerReportDialog extends JDialog {
     
+    private static final int REPORT_LINES_PER_PAGE = 500;
+    
+    // What each report is built from, so the cache knows when to drop it
+    // Customer reports show arrears; a sale drops only the reports of its customer
+    private static final Set<Source> CUSTOMER_REPORT_SOURCES = EnumSet.of(Source.CUSTOMERS, Source.ARREARS);
+    private static final Set<Source> RETURN_REPORT_SOURCES = EnumSet.of(Source.CUSTOMERS, Source.RETURNS);
+    
     private CustomerService customerService;
+    private CustomerNameIndex customerNameIndex;
+    private CustomerRepository customerRepository;
+    private CustomerArrearsLedger arrearsLedger;
+    private CustomerStreamLoader customerLoader;
     private ReportService reportService;
+    private ReportCache reportCache;
     
     // Report Type Buttons
     private JButton btnAllCustomerFull;
@@ -61,7 +84,12 @@ public class CustomerReportDialog extends JDialog {
     public CustomerReportDialog(Frame parent) {
         super(parent, "Customer Reports", true);
         this.customerService = new CustomerService();
+        this.customerNameIndex = CustomerNameIndex.getInstance();
+        this.customerNameIndex.buildInBackground();
+        this.customerRepository = CustomerRepository.getInstance();
+        this.arrearsLedger = CustomerArrearsLedger.getInstance();
         this.reportService = new ReportService();
+        this.reportCache = ReportCache.getInstance();
         
         initializeComponents();
         setupLayout();
@@ -397,17 +425,30 @@ public class CustomerReportDialog extends JDialog {
     }
     
     private void loadCustomers() {
+        if (customerLoader != null) {
+            customerLoader.cancel();
+        }
         cmbCustomer.removeAllItems();
         cmbCustomer.addItem("Select a Customer");
         
-        try {
-            List<Customer> customers = customerService.getAllCustomers();
-            for (Customer customer : customers) {
-                cmbCustomer.addItem(customer.getName());
+        // The dialog opens right away; names are added while they are read
+        DefaultComboBoxModel<String> customerNames = (DefaultComboBoxModel<String>) cmbCustomer.getModel();
+        customerLoader = new CustomerStreamLoader(customerRepository, chunk -> {
+            List<String> names = new ArrayList<>(chunk.size());
+            for (Customer customer : chunk) {
+                names.add(customer.getName());
             }
-        } catch (Exception ex) {
-            ex.printStackTrace();
+            customerNames.addAll(names);
+        });
+        customerLoader.execute();
+    }
+    
+    @Override
+    public void dispose() {
+        if (customerLoader != null) {
+            customerLoader.cancel();
         }
+        super.dispose();
     }
     
     private void viewReport() {
@@ -451,66 +492,93 @@ public class CustomerReportDialog extends JDialog {
         }
     }
     
-    private void showCustomerFullReport(String customerName) {
-        List<Customer> customers;
-        
-        if (customerName != null) {
+    /**
+     * All customers with the given name; a shared name reports every one of them
+     */
+    private List<Customer> findCustomersByName(String customerName) {
+        if (!customerNameIndex.isReady()) {
             Customer customer = customerService.getCustomerByName(customerName);
-            customers = customer != null ? List.of(customer) : List.of();
-        } else {
-            customers = customerService.getAllCustomers();
+            return customer != null ? List.of(customer) : List.of();
         }
-        
-        // Create report dialog
-        showReportViewer("Customer Full Details Report", 
-            reportService.generateCustomerFullReport(customers));
+        List<Customer> customers = new ArrayList<>();
+        for (String id : customerNameIndex.findIds(customerName)) {
+            Customer customer = customerService.getCustomerById(id);
+            if (customer != null) {
+                customers.add(customer);
+            }
+        }
+        return customers;
+    }
+    
+    private void showCustomerFullReport(String customerName) {
+        // Generate report, unless it is cached and nothing behind it changed
+        ReportDocument report = reportCache.getOrBuild(
+            new ReportCache.Key("ALL_CUSTOMER_FULL", customerName, null, null),
+            CUSTOMER_REPORT_SOURCES,
+            () -> ReportDocument.ofText("Customer Full Details Report",
+                reportService.generateCustomerFullReport(reportCustomers(customerName)),
+                REPORT_LINES_PER_PAGE));
+        
+        showReportViewer(report);
     }
     
     private void showCustomerShortReport(String customerName) {
+        // Generate report, unless it is cached and nothing behind it changed
+        ReportDocument report = reportCache.getOrBuild(
+            new ReportCache.Key("ALL_CUSTOMER_SHORT", customerName, null, null),
+            CUSTOMER_REPORT_SOURCES,
+            () -> ReportDocument.ofText("Customer Short Details Report",
+                reportService.generateCustomerShortReport(reportCustomers(customerName)),
+                REPORT_LINES_PER_PAGE));
+        
+        showReportViewer(report);
+    }
+    
+    /**
+     * Customers a report is about, with the arrears the ledger holds for
+     * them, so sales saved since they were loaded are included
+     */
+    private List<Customer> reportCustomers(String customerName) {
         List<Customer> customers;
-        
         if (customerName != null) {
-            Customer customer = customerService.getCustomerByName(customerName);
-            customers = customer != null ? List.of(customer) : List.of();
+            customers = findCustomersByName(customerName);
         } else {
-            customers = customerService.getAllCustomers();
+            customers = customerRepository.getSnapshot().getCustomers();
         }
         
-        // Create report dialog
-        showReportViewer("Customer Short Details Report", 
-            reportService.generateCustomerShortReport(customers));
+        long[] arrears = arrearsLedger.getArrears(customers);
+        List<Customer> withArrears = customers;
+        for (int i = 0; i < arrears.length; i++) {
+            Customer customer = customers.get(i);
+            if (Money.ofDecimal(customer.getArrears()) == arrears[i]) {
+                continue;
+            }
+            // Copied, as customers in the snapshot are shared
+            if (withArrears == customers) {
+                withArrears = new ArrayList<>(customers);
+            }
+            Customer updated = CustomerRepository.copyOf(customer);
+            updated.setArrears(Money.toDecimal(arrears[i]));
+            withArrears.set(i, updated);
+        }
+        return withArrears;
     }
     
     private void showCustomerReturnList(String customerName, LocalDate fromDate, LocalDate toDate) {
-        // Generate return list report
-        String reportContent = reportService.generateCustomerReturnReport(
-            customerName, fromDate, toDate);
-        
-        showReportViewer("Customer Return List", reportContent);
+        // Generate return list report, unless it is cached for this customer and date range
+        ReportDocument report = reportCache.getOrBuild(
+            new ReportCache.Key("CUSTOMER_RETURN_LIST", customerName, fromDate, toDate),
+            RETURN_REPORT_SOURCES,
+            () -> ReportDocument.ofText("Customer Return List",
+                reportService.generateCustomerReturnReport(customerName, fromDate, toDate),
+                REPORT_LINES_PER_PAGE));
+        
+        showReportViewer(report);
     }
     
-    private void showReportViewer(String title, String content) {
-        JDialog reportDialog = new JDialog(this, title, true);
-        reportDialog.setLayout(new BorderLayout());
-        
-        JTextArea txtReport = new JTextArea(content);
-        txtReport.setEditable(false);
-        txtReport.setFont(new Font("Courier New", Font.PLAIN, 12));
-        txtReport.setMargin(new Insets(10, 10, 10, 10));
-        
-        JScrollPane scrollPane = new JScrollPane(txtReport);
-        reportDialog.add(scrollPane, BorderLayout.CENTER);
-        
-        JButton btnClose = new JButton("Close");
-        btnClose.addActionListener(e -> reportDialog.dispose());
-        
-        JPanel buttonPanel = new JPanel(new FlowLayout(FlowLayout.CENTER));
-        buttonPanel.add(btnClose);
-        reportDialog.add(buttonPanel, BorderLayout.SOUTH);
-        
-        reportDialog.setSize(800, 600);
-        reportDialog.setLocationRelativeTo(this);
-        reportDialog.setVisible(true);
+    private void showReportViewer(ReportDocument report) {
+        // Shows one page at a time; saving writes the report page by page
+        new ReportViewerDialog(this, report).setVisible(true);
     }
     
     private void printReport() {
@@ -563,13 +631,7 @@ public class CustomerReportDialog extends JDialog {
                     customerName = null;
                 }
                 
-                List<Customer> customers;
-                if (customerName != null) {
-                    Customer customer = customerService.getCustomerByName(customerName);
-                    customers = customer != null ? List.of(customer) : List.of();
-                } else {
-                    customers = customerService.getAllCustomers();
-                }
+                List<Customer> customers = reportCustomers(customerName);
                 
                 pdfGenerator.generateCustomerReport(customers, file.getAbsolutePath(), selectedReportType);
                 
@@ -0,0 +1,85 @@
+package main.java.com.inventory.view.customer;
+
+// package com.inventory.view.customer;
+
+import com.inventory.model.Customer;
+import com.inventory.service.CustomerPageSource;
+
+import javax.swing.SwingWorker;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * CustomerStreamLoader - Reads customers in the background and hands them
+ * to the screen in chunks while the rest is still loading
+ * Features:
+ * - Small first chunk so the first rows show up at once
+ * - Chunks are delivered on the event dispatch thread
+ * - cancel() stops after the current chunk; nothing is delivered afterwards
+ */
+public class CustomerStreamLoader extends SwingWorker<Integer, Customer> {
+    
+    public interface ChunkListener {
+        /**
+         * Called on the event dispatch thread for every chunk, in order
+         */
+        void customersLoaded(List<Customer> chunk);
+    }
+    
+    private static final int FIRST_CHUNK_SIZE = 100;
+    private static final int CHUNK_SIZE = 1000;
+    
+    private final CustomerPageSource source;
+    private final ChunkListener listener;
+    
+    public CustomerStreamLoader(CustomerPageSource source, ChunkListener listener) {
+        this.source = source;
+        this.listener = listener;
+    }
+    
+    /**
+     * Stop loading, e.g. when the screen is closed or reloaded
+     */
+    public void cancel() {
+        // Do not interrupt: the current database call is allowed to finish
+        cancel(false);
+    }
+    
+    @Override
+    protected Integer doInBackground() {
+        int offset = 0;
+        int chunkSize = FIRST_CHUNK_SIZE;
+        while (!isCancelled()) {
+            List<Customer> chunk = source.getCustomers(offset, chunkSize);
+            if (chunk.isEmpty()) {
+                break;
+            }
+            publish(chunk.toArray(new Customer[0]));
+            offset += chunk.size();
+            if (chunk.size() < chunkSize) {
+                break;
+            }
+            chunkSize = CHUNK_SIZE;
+        }
+        return offset;
+    }
+    
+    @Override
+    protected void process(List<Customer> chunk) {
+        if (!isCancelled()) {
+            listener.customersLoaded(chunk);
+        }
+    }
+    
+    @Override
+    protected void done() {
+        try {
+            get();
+        } catch (CancellationException ex) {
+            // Replaced by a newer load or the screen was closed
+        } catch (InterruptedException | ExecutionException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
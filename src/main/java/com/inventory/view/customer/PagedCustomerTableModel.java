@@ -0,0 +1,536 @@
+package main.java.com.inventory.view.customer;
+
+// package com.inventory.view.customer;
+
+import com.inventory.model.Customer;
+import com.inventory.service.CustomerArrearsLedger;
+import com.inventory.service.CustomerPageSource;
+import com.inventory.service.CustomerRepository;
+import com.inventory.service.CustomerSortKey;
+import com.inventory.util.Money;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * PagedCustomerTableModel - Customer table that only holds the rows in view
+ * Features:
+ * - Rows are fetched a page at a time when the table first asks for them
+ * - Bounded LRU of loaded pages, so memory does not grow with the customer count
+ * - Row count comes from the source without loading the rows
+ * - Cells are read straight from the Customer objects, nothing is copied
+ *
+ * - Loads still queued are dropped on reload or cancelPending()
+ * - Single customers can be added, updated or removed in place, with
+ *   row-level events, instead of reloading the table
+ * - Loaded rows are indexed by customer ID, and stamped with the repository
+ *   version they were read at, so a row can tell whether it is out of date
+ * - Arrears come from the CustomerArrearsLedger; a balance it does not know
+ *   yet is read in the background and the cell is empty until then
+ * - A page that failed to load is not asked for again for a few seconds
+ *
+ * Rows that are not loaded yet show as empty until their page arrives.
+ * Sorting is done by the source (see getSortKey).
+ */
+public class PagedCustomerTableModel extends AbstractTableModel {
+    
+    public static final int COLUMN_ARREARS = 17;
+    
+    private static final String[] COLUMNS = {
+        "ID", "Customer Name", "Office/Office No", "Customer Contact Person",
+        "Billing Address", "Shipping Address", "City", "Bank", "Account No",
+        "Contact Person", "Person Email", "Person Phone", "Mobile Number",
+        "Private Note", "Online", "Other Info", "Private", "Arrears"
+    };
+    
+    private static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int DEFAULT_MAX_PAGES = 25;
+    private static final int FAILED_PAGE_RETRY_MS = 5000;
+    
+    // One loader for all customer tables; pages are small and quick
+    private static final ExecutorService LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "customer-pages");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    private final CustomerArrearsLedger arrearsLedger;
+    private final CustomerRepository customerRepository;
+    private final int pageSize;
+    private final Map<Integer, List<Customer>> pages;
+    private final Set<Integer> pagesLoading = new HashSet<>();
+    // Page -> when its last load failed
+    private final Map<Integer, Long> pagesFailed = new HashMap<>();
+    private final Set<String> arrearsLoading = new HashSet<>();
+    
+    // Row of every loaded customer, and the repository version its values are from
+    private final Map<String, Integer> rowById = new HashMap<>();
+    private final Map<String, Long> versionById = new HashMap<>();
+    
+    private CustomerPageSource source;
+    private int rowCount;
+    private boolean countLoaded;
+    
+    // Changed on every reload or cancel, so older loads are skipped and their results dropped
+    private volatile int generation;
+    
+    public PagedCustomerTableModel(CustomerArrearsLedger arrearsLedger, CustomerRepository customerRepository) {
+        this(arrearsLedger, customerRepository, DEFAULT_PAGE_SIZE, DEFAULT_MAX_PAGES);
+    }
+    
+    public PagedCustomerTableModel(CustomerArrearsLedger arrearsLedger, CustomerRepository customerRepository,
+                                   int pageSize, int maxPages) {
+        this.arrearsLedger = arrearsLedger;
+        this.customerRepository = customerRepository;
+        this.pageSize = pageSize;
+        this.pages = new LinkedHashMap<Integer, List<Customer>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Customer>> eldest) {
+                if (size() <= maxPages) {
+                    return false;
+                }
+                forgetRows(eldest.getKey(), eldest.getValue());
+                for (Customer customer : eldest.getValue()) {
+                    if (!rowById.containsKey(customer.getId())) {
+                        versionById.remove(customer.getId());
+                    }
+                }
+                return true;
+            }
+        };
+    }
+    
+    /**
+     * Show the customers of a new source (e.g. a different search)
+     */
+    public void setSource(CustomerPageSource source) {
+        this.source = source;
+        reload();
+    }
+    
+    /**
+     * Drop all loaded pages and read the row count again
+     */
+    public void reload() {
+        int loadGeneration = ++generation;
+        pages.clear();
+        pagesLoading.clear();
+        pagesFailed.clear();
+        arrearsLoading.clear();
+        rowById.clear();
+        versionById.clear();
+        rowCount = 0;
+        countLoaded = false;
+        fireTableDataChanged();
+        
+        CustomerPageSource current = source;
+        if (current == null) {
+            return;
+        }
+        LOADER.execute(() -> {
+            if (loadGeneration != generation) {
+                return;
+            }
+            int count;
+            try {
+                count = current.getCustomerCount();
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                return;
+            }
+            SwingUtilities.invokeLater(() -> {
+                if (loadGeneration == generation) {
+                    rowCount = count;
+                    countLoaded = true;
+                    fireTableDataChanged();
+                }
+            });
+        });
+    }
+    
+    /**
+     * Skip every load that has not started yet, e.g. when the table is hidden.
+     * Pages already loaded are kept.
+     */
+    public void cancelPending() {
+        generation++;
+        pagesLoading.clear();
+        arrearsLoading.clear();
+    }
+    
+    /**
+     * Continue after cancelPending(); missing pages load again when the table asks for them
+     */
+    public void resumePending() {
+        if (!countLoaded) {
+            reload();
+        } else if (rowCount > 0) {
+            fireTableRowsUpdated(0, rowCount - 1);
+        }
+    }
+    
+    /**
+     * Show a customer added after the rows were counted. The row is appended
+     * if the source puts new customers last (see CustomerPageSource.addsLast).
+     *
+     * @return false if the rows are still being counted or the new row's
+     *         position is unknown, e.g. in a sorted list; reload instead
+     */
+    public boolean customerAdded(Customer customer) {
+        if (!countLoaded || !source.addsLast()) {
+            return false;
+        }
+        // Pages queued before the change would land one row off
+        cancelPending();
+        int row = rowCount++;
+        int pageIndex = row / pageSize;
+        List<Customer> page = pages.get(pageIndex);
+        if (page != null && page.size() == row % pageSize) {
+            List<Customer> changed = new ArrayList<>(page);
+            changed.add(customer);
+            putPage(pageIndex, changed);
+            versionById.put(customer.getId(), customerRepository.getVersion());
+        }
+        fireTableRowsInserted(row, row);
+        return true;
+    }
+    
+    /**
+     * Show the new values of a customer. Rows not loaded yet need nothing;
+     * they are read fresh when shown.
+     */
+    public void customerUpdated(Customer customer) {
+        int row = getRowOf(customer.getId());
+        if (row < 0) {
+            return;
+        }
+        int pageIndex = row / pageSize;
+        List<Customer> changed = new ArrayList<>(pages.get(pageIndex));
+        changed.set(row % pageSize, customer);
+        putPage(pageIndex, changed);
+        versionById.put(customer.getId(), customerRepository.getVersion());
+        fireTableRowsUpdated(row, row);
+    }
+    
+    /**
+     * Remove a deleted customer's row; loaded rows below it move up
+     *
+     * @return false if the customer's row is not loaded, so its position is
+     *         unknown; reload instead
+     */
+    public boolean customerRemoved(String customerId) {
+        int row = getRowOf(customerId);
+        if (row < 0) {
+            return false;
+        }
+        source.removeCustomer(customerId);
+        // Pages queued before the change would land one row off
+        cancelPending();
+        rowCount--;
+        
+        // Shift loaded pages from the removed row on: each page passes its
+        // first customer to the end of the page before it
+        int firstPage = row / pageSize;
+        List<Integer> pageIndexes = new ArrayList<>();
+        for (Integer pageIndex : pages.keySet()) {
+            if (pageIndex >= firstPage) {
+                pageIndexes.add(pageIndex);
+            }
+        }
+        Collections.sort(pageIndexes);
+        Map<Integer, List<Customer>> changed = new HashMap<>();
+        for (int pageIndex : pageIndexes) {
+            List<Customer> page = new ArrayList<>(pages.get(pageIndex));
+            if (pageIndex == firstPage) {
+                page.remove(row % pageSize);
+            } else if (!page.isEmpty()) {
+                Customer moved = page.remove(0);
+                List<Customer> previous = changed.get(pageIndex - 1);
+                if (previous != null) {
+                    previous.add(moved);
+                }
+            }
+            changed.put(pageIndex, page);
+        }
+        // Lowest page first, so a customer moved up is indexed at its new row
+        for (int pageIndex : pageIndexes) {
+            List<Customer> page = changed.get(pageIndex);
+            putPage(pageIndex, page);
+            // The page below was not loaded to fill the gap; read this page again
+            if (pageIndex * pageSize + page.size() < Math.min((pageIndex + 1) * pageSize, rowCount)) {
+                requestPage(pageIndex);
+            }
+        }
+        fireTableRowsDeleted(row, row);
+        return true;
+    }
+    
+    /**
+     * Row showing a customer, or -1 if it is not loaded
+     */
+    public int getRowOf(String customerId) {
+        Integer row = rowById.get(customerId);
+        return row != null ? row : -1;
+    }
+    
+    /**
+     * Whether the customer in a row was changed after its values were read,
+     * so it should be read again before use
+     */
+    public boolean isStale(int row) {
+        Customer customer = getCustomerAt(row);
+        if (customer == null) {
+            return true;
+        }
+        Long version = versionById.get(customer.getId());
+        return version == null || customerRepository.getChangeVersion(customer.getId()) > version;
+    }
+    
+    /**
+     * Customer shown in a row, or null if its page is not loaded yet
+     */
+    public Customer getCustomerAt(int row) {
+        List<Customer> page = pages.get(row / pageSize);
+        if (page == null) {
+            requestPage(row / pageSize);
+            return null;
+        }
+        int index = row % pageSize;
+        return index < page.size() ? page.get(index) : null;
+    }
+    
+    /**
+     * Field the source must order by to sort on a column, or null if the
+     * column cannot be sorted. Arrears are shown from the ledger, which the
+     * database cannot order by, so that column is not sortable.
+     */
+    public static CustomerSortKey getSortKey(int column) {
+        switch (column) {
+            case 0: return CustomerSortKey.ID;
+            case 1: return CustomerSortKey.NAME;
+            case 2: return CustomerSortKey.OFFICE_NUMBER;
+            case 3: return CustomerSortKey.CONTACT_PERSON;
+            case 4: return CustomerSortKey.BILLING_ADDRESS;
+            case 5: return CustomerSortKey.SHIPPING_ADDRESS;
+            case 6: return CustomerSortKey.CITY;
+            case 7: return CustomerSortKey.BANK_NAME;
+            case 8: return CustomerSortKey.ACCOUNT_NUMBER;
+            case 9: return CustomerSortKey.CONTACT_PERSON;
+            case 10: return CustomerSortKey.EMAIL;
+            case 11: return CustomerSortKey.PHONE;
+            case 12: return CustomerSortKey.MOBILE_NUMBER;
+            default: return null;
+        }
+    }
+    
+    @Override
+    public int getRowCount() {
+        return rowCount;
+    }
+    
+    @Override
+    public int getColumnCount() {
+        return COLUMNS.length;
+    }
+    
+    @Override
+    public String getColumnName(int column) {
+        return COLUMNS[column];
+    }
+    
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return columnIndex == COLUMN_ARREARS ? Double.class : String.class;
+    }
+    
+    @Override
+    public boolean isCellEditable(int row, int column) {
+        return false;
+    }
+    
+    @Override
+    public Object getValueAt(int row, int column) {
+        Customer customer = getCustomerAt(row);
+        if (customer == null) {
+            return null;
+        }
+        switch (column) {
+            case 0: return customer.getId();
+            case 1: return customer.getName();
+            case 2: return customer.getOfficeNumber();
+            case 3: return customer.getContactPerson();
+            case 4: return customer.getBillingAddress();
+            case 5: return customer.getShippingAddress();
+            case 6: return customer.getCity();
+            case 7: return customer.getBankName();
+            case 8: return customer.getAccountNumber();
+            case 9: return customer.getContactPerson();
+            case 10: return customer.getEmail();
+            case 11: return customer.getPhone();
+            case 12: return customer.getMobileNumber();
+            case 13: return customer.getPrivateNote();
+            case 14: return customer.getOnlineInfo();
+            case 15: return customer.getOtherInfo();
+            case 16: return customer.isPrivate() ? "Yes" : "No";
+            case COLUMN_ARREARS: return getArrears(customer.getId());
+            default: return null;
+        }
+    }
+    
+    /**
+     * Repaint a customer's arrears after the ledger posted to it
+     */
+    public void arrearsChanged(String customerId) {
+        int row = getRowOf(customerId);
+        if (row >= 0) {
+            fireTableCellUpdated(row, COLUMN_ARREARS);
+        }
+    }
+    
+    /**
+     * Known balance, or null while it is read in the background
+     */
+    private Double getArrears(String customerId) {
+        Long arrears = arrearsLedger.findArrears(customerId);
+        if (arrears != null) {
+            return Money.toDecimal(arrears).doubleValue();
+        }
+        if (arrearsLoading.add(customerId)) {
+            int loadGeneration = generation;
+            LOADER.execute(() -> {
+                if (loadGeneration != generation) {
+                    return;
+                }
+                try {
+                    arrearsLedger.getArrears(customerId);
+                } catch (RuntimeException ex) {
+                    // Cell stays empty; tried again the next time it is painted
+                    ex.printStackTrace();
+                }
+                SwingUtilities.invokeLater(() -> {
+                    if (loadGeneration != generation) {
+                        return;
+                    }
+                    arrearsLoading.remove(customerId);
+                    int row = getRowOf(customerId);
+                    if (row >= 0) {
+                        fireTableCellUpdated(row, COLUMN_ARREARS);
+                    }
+                });
+            });
+        }
+        return null;
+    }
+    
+    /**
+     * Store a page and index its rows by customer ID. Customers no longer
+     * in any loaded row lose their version stamp.
+     */
+    private void putPage(int pageIndex, List<Customer> page) {
+        List<Customer> replaced = pages.put(pageIndex, page);
+        if (replaced != null) {
+            forgetRows(pageIndex, replaced);
+        }
+        for (int i = 0; i < page.size(); i++) {
+            rowById.put(page.get(i).getId(), pageIndex * pageSize + i);
+        }
+        if (replaced != null) {
+            for (Customer customer : replaced) {
+                if (!rowById.containsKey(customer.getId())) {
+                    versionById.remove(customer.getId());
+                }
+            }
+        }
+    }
+    
+    /**
+     * Unindex the rows of a page; customers already indexed at a row of
+     * another page (moved there) are left alone
+     */
+    private void forgetRows(int pageIndex, List<Customer> page) {
+        int first = pageIndex * pageSize;
+        for (Customer customer : page) {
+            Integer row = rowById.get(customer.getId());
+            if (row != null && row >= first && row < first + pageSize) {
+                rowById.remove(customer.getId());
+            }
+        }
+    }
+    
+    private void requestPage(int pageIndex) {
+        CustomerPageSource current = source;
+        if (current == null) {
+            return;
+        }
+        Long failedAt = pagesFailed.get(pageIndex);
+        if (failedAt != null && System.currentTimeMillis() - failedAt < FAILED_PAGE_RETRY_MS) {
+            return;
+        }
+        if (!pagesLoading.add(pageIndex)) {
+            return;
+        }
+        int loadGeneration = generation;
+        LOADER.execute(() -> {
+            if (loadGeneration != generation) {
+                return;
+            }
+            // Read before the query, so the rows are at least this new
+            long version = customerRepository.getVersion();
+            List<Customer> page;
+            try {
+                page = current.getCustomers(pageIndex * pageSize, pageSize);
+                // Rows loaded here seed the ledger; known balances include newer postings
+                for (Customer customer : page) {
+                    arrearsLedger.prime(customer.getId(), customer.getArrears());
+                }
+            } catch (RuntimeException ex) {
+                ex.printStackTrace();
+                page = null;
+            }
+            List<Customer> loaded = page;
+            SwingUtilities.invokeLater(() -> pageLoaded(loadGeneration, pageIndex, loaded, version));
+        });
+    }
+    
+    private void pageLoaded(int loadGeneration, int pageIndex, List<Customer> page, long version) {
+        if (loadGeneration != generation) {
+            return;
+        }
+        pagesLoading.remove(pageIndex);
+        int first = pageIndex * pageSize;
+        if (page == null) {
+            // Not asked for on every repaint; shown rows try again once the wait is over
+            pagesFailed.put(pageIndex, System.currentTimeMillis());
+            Timer retry = new Timer(FAILED_PAGE_RETRY_MS, e -> {
+                int last = Math.min(first + pageSize, rowCount) - 1;
+                if (loadGeneration == generation && first <= last) {
+                    fireTableRowsUpdated(first, last);
+                }
+            });
+            retry.setRepeats(false);
+            retry.start();
+            return;
+        }
+        pagesFailed.remove(pageIndex);
+        putPage(pageIndex, page);
+        for (Customer customer : page) {
+            versionById.put(customer.getId(), version);
+        }
+        
+        int last = Math.min(first + pageSize, rowCount) - 1;
+        if (first <= last) {
+            fireTableRowsUpdated(first, last);
+        }
+    }
+}
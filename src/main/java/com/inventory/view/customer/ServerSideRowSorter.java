@@ -0,0 +1,111 @@
+package main.java.com.inventory.view.customer;
+
+// package com.inventory.view.customer;
+
+import javax.swing.RowSorter;
+import javax.swing.SortOrder;
+import javax.swing.table.TableModel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * ServerSideRowSorter - Sort arrows and header clicks for a table whose
+ * rows are already ordered by the database
+ * Features:
+ * - Rows are never reordered here; view and model row indexes are the same
+ * - Clicking a sortable column header switches between ascending and
+ *   descending and fires SORT_ORDER_CHANGED; the listener reloads the
+ *   model in the new order
+ * - Clicks on columns that cannot be sorted are ignored
+ */
+public class ServerSideRowSorter<M extends TableModel> extends RowSorter<M> {
+    
+    private final M model;
+    private final IntPredicate sortable;
+    private List<SortKey> sortKeys = Collections.emptyList();
+    
+    /**
+     * @param sortable model columns the database can order by
+     */
+    public ServerSideRowSorter(M model, IntPredicate sortable) {
+        this.model = model;
+        this.sortable = sortable;
+    }
+    
+    @Override
+    public M getModel() {
+        return model;
+    }
+    
+    @Override
+    public void toggleSortOrder(int column) {
+        if (!sortable.test(column)) {
+            return;
+        }
+        SortOrder order = SortOrder.ASCENDING;
+        if (!sortKeys.isEmpty() && sortKeys.get(0).getColumn() == column
+                && sortKeys.get(0).getSortOrder() == SortOrder.ASCENDING) {
+            order = SortOrder.DESCENDING;
+        }
+        setSortKeys(Collections.singletonList(new SortKey(column, order)));
+    }
+    
+    @Override
+    public int convertRowIndexToModel(int index) {
+        return index;
+    }
+    
+    @Override
+    public int convertRowIndexToView(int index) {
+        return index;
+    }
+    
+    @Override
+    public void setSortKeys(List<? extends SortKey> keys) {
+        sortKeys = keys != null ? Collections.unmodifiableList(new ArrayList<>(keys)) : Collections.emptyList();
+        fireSortOrderChanged();
+    }
+    
+    @Override
+    public List<? extends SortKey> getSortKeys() {
+        return sortKeys;
+    }
+    
+    @Override
+    public int getViewRowCount() {
+        return model.getRowCount();
+    }
+    
+    @Override
+    public int getModelRowCount() {
+        return model.getRowCount();
+    }
+    
+    // Nothing is cached per row, so model changes need no work here
+    
+    @Override
+    public void modelStructureChanged() {
+    }
+    
+    @Override
+    public void allRowsChanged() {
+    }
+    
+    @Override
+    public void rowsInserted(int firstRow, int endRow) {
+    }
+    
+    @Override
+    public void rowsDeleted(int firstRow, int endRow) {
+    }
+    
+    @Override
+    public void rowsUpdated(int firstRow, int endRow) {
+    }
+    
+    @Override
+    public void rowsUpdated(int firstRow, int endRow, int column) {
+    }
+}
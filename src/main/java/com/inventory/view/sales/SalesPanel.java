@@ -1,30 +1,45 @@
 package main.java.com.inventory.view.sales;
 
-import com.inventory.controller.SalesController;
 import com.inventory.model.Customer;
 import com.inventory.model.Invoice;
 import com.inventory.model.InvoiceItem;
 import com.inventory.model.Product;
+import com.inventory.service.CustomerArrearsLedger;
+import com.inventory.service.CustomerNameIndex;
+import com.inventory.service.CustomerRepository;
+import com.inventory.service.CustomerRepository.ChangeType;
+import com.inventory.service.CustomerRepository.CustomerChange;
+import com.inventory.service.CustomerRepository.CustomerChangeListener;
 import com.inventory.service.CustomerService;
-import com.inventory.service.ProductService;
+import com.inventory.service.InvoiceCommitPipeline;
+import com.inventory.service.InvoiceCommitPipeline.CommitStatus;
+import com.inventory.service.InvoiceNumberAllocator;
+import com.inventory.service.InvoiceTotals;
+import com.inventory.service.StockReservationService;
+import com.inventory.service.ProductCatalog;
+import com.inventory.service.ProductSearchIndex;
+import com.inventory.util.Money;
 import com.inventory.util.ValidationUtil;
 import com.inventory.view.components.CustomButton;
 import com.inventory.view.components.CustomTable;
 import com.inventory.view.components.DatePicker;
 import com.inventory.view.components.SearchTextField;
+import com.inventory.view.customer.CustomerStreamLoader;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.*;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * SalesPanel - Main panel for creating sales invoices
@@ -38,15 +53,31 @@ import java.util.List;
  */
 public class SalesPanel extends JPanel {
     
-    private SalesController salesController;
+    // Product type-ahead
+    private static final int PRODUCT_SUGGESTIONS = 15;
+    private static final int PRODUCT_SEARCH_DELAY_MS = 100;
+    
+    private InvoiceCommitPipeline commitPipeline;
+    private InvoiceNumberAllocator invoiceNumberAllocator;
+    private InvoiceTotals invoiceTotals;
+    private StockReservationService stockReservations;
+    private CustomerArrearsLedger arrearsLedger;
     private CustomerService customerService;
-    private ProductService productService;
+    private CustomerNameIndex customerNameIndex;
+    private CustomerRepository customerRepository;
+    private CustomerStreamLoader customerLoader;
+    
+    // Repository version the customer combo shows
+    private long customerNamesVersion;
+    private ProductCatalog productCatalog;
+    private ProductSearchIndex productSearchIndex;
     
     // Header Components
     private JLabel lblInvoiceNo;
     private JLabel lblDate;
     private JLabel lblTime;
     private JLabel lblArrears;
+    private JLabel lblCommitStatus;
     private JComboBox<String> cmbCustomer;
     private JComboBox<String> cmbCity;
     private JButton btnNewCustomer;
@@ -54,6 +85,10 @@ public class SalesPanel extends JPanel {
     // Product Selection Components
     private JTextField txtProductId;
     private JComboBox<String> cmbProduct;
+    private DefaultComboBoxModel<String> productSuggestions;
+    private Timer productSearchTimer;
+    private boolean updatingProductSuggestions;
+    private Product selectedProduct;
     private JTextField txtQuantity;
     private JComboBox<String> cmbCapacity;
     private JLabel lblSymbol;
@@ -89,10 +124,26 @@ public class SalesPanel extends JPanel {
     private CustomButton btnPayAndPrint;
     
     // Current Invoice Data
-    private String currentInvoiceNo;
     private Customer selectedCustomer;
     private BigDecimal arrearsBalance;
     
+    // Status updates from the background invoice commit
+    private final InvoiceCommitPipeline.CommitListener commitListener = (invoice, status, message) ->
+        SwingUtilities.invokeLater(() -> updateCommitStatus(invoice.getInvoiceNo(), status, message));
+    
+    // Customers added, edited or deleted on another screen
+    private final CustomerChangeListener customerListener = new CustomerChangeListener() {
+        @Override
+        public void customerChanged(CustomerChange change) {
+            SwingUtilities.invokeLater(() -> onCustomerChanged(change));
+        }
+        
+        @Override
+        public void customersChanged(List<CustomerChange> changes) {
+            SwingUtilities.invokeLater(() -> onCustomersChanged(changes));
+        }
+    };
+    
     public SalesPanel() {
         initializeServices();
         initializeComponents();
@@ -103,10 +154,18 @@ public class SalesPanel extends JPanel {
     }
     
     private void initializeServices() {
-        this.salesController = new SalesController();
+        this.commitPipeline = InvoiceCommitPipeline.getInstance();
+        this.invoiceNumberAllocator = InvoiceNumberAllocator.getInstance();
         this.customerService = new CustomerService();
-        this.productService = new ProductService();
+        this.customerRepository = CustomerRepository.getInstance();
+        this.customerNameIndex = CustomerNameIndex.getInstance();
+        this.customerNameIndex.buildInBackground();
+        this.productCatalog = ProductCatalog.getInstance();
+        this.productSearchIndex = new ProductSearchIndex(productCatalog);
+        this.stockReservations = StockReservationService.getInstance();
+        this.arrearsLedger = CustomerArrearsLedger.getInstance();
         this.invoiceItems = new ArrayList<>();
+        this.invoiceTotals = new InvoiceTotals();
     }
     
     private void initializeComponents() {
@@ -135,7 +194,7 @@ public class SalesPanel extends JPanel {
         ));
         
         // Invoice Info Panel (Left)
-        JPanel invoiceInfoPanel = new JPanel(new GridLayout(3, 2, 10, 8));
+        JPanel invoiceInfoPanel = new JPanel(new GridLayout(4, 2, 10, 8));
         invoiceInfoPanel.setBackground(Color.WHITE);
         
         invoiceInfoPanel.add(new JLabel("Invoice No:"));
@@ -154,6 +213,11 @@ public class SalesPanel extends JPanel {
         lblTime.setFont(new Font("Segoe UI", Font.PLAIN, 12));
         invoiceInfoPanel.add(lblTime);
         
+        invoiceInfoPanel.add(new JLabel("Sync:"));
+        lblCommitStatus = new JLabel();
+        lblCommitStatus.setFont(new Font("Segoe UI", Font.PLAIN, 12));
+        invoiceInfoPanel.add(lblCommitStatus);
+        
         // Customer Selection Panel (Center)
         JPanel customerPanel = new JPanel(new GridBagLayout());
         customerPanel.setBackground(Color.WHITE);
@@ -240,7 +304,11 @@ public class SalesPanel extends JPanel {
         productPanel.add(new JLabel("Select Product:"), gbc);
         
         gbc.gridx = 3; gbc.weightx = 0.7;
-        cmbProduct = new JComboBox<>();
+        // Editable type-ahead: the list only holds the best matches for the typed text
+        productSuggestions = new DefaultComboBoxModel<>();
+        cmbProduct = new JComboBox<>(productSuggestions);
+        cmbProduct.setEditable(true);
+        cmbProduct.setMaximumRowCount(PRODUCT_SUGGESTIONS);
         cmbProduct.setPreferredSize(new Dimension(300, 30));
         productPanel.add(cmbProduct, gbc);
         
@@ -579,52 +647,71 @@ public class SalesPanel extends JPanel {
         txtProductId.addActionListener(e -> onProductIdEntered());
         cmbProduct.addActionListener(e -> onProductSelected());
         
+        productSearchTimer = new Timer(PRODUCT_SEARCH_DELAY_MS, e -> updateProductSuggestions());
+        productSearchTimer.setRepeats(false);
+        JTextField productEditor = (JTextField) cmbProduct.getEditor().getEditorComponent();
+        productEditor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override
+            public void insertUpdate(DocumentEvent e) {
+                onProductTextChanged();
+            }
+            
+            @Override
+            public void removeUpdate(DocumentEvent e) {
+                onProductTextChanged();
+            }
+            
+            @Override
+            public void changedUpdate(DocumentEvent e) {
+            }
+        });
+        
         // Add/Remove buttons
         btnAdd.addActionListener(e -> addInvoiceItem());
         btnRemove.addActionListener(e -> removeSelectedItem());
         btnRemoveAll.addActionListener(e -> removeAllItems());
         
-        // Calculation fields
-        txtShippingCost.addKeyListener(new KeyAdapter() {
-            @Override
-            public void keyReleased(KeyEvent e) {
-                calculateTotals();
-            }
-        });
+        // Calculation fields - each one only updates its own part of the totals.
+        // Document listeners also see pasted text and setText(), not just typing.
+        onTextChanged(txtShippingCost, this::onShippingCostChanged);
+        onTextChanged(txtTaxAmount, this::onTaxChanged);
+        cmbTaxType.addActionListener(e -> onTaxChanged());
+        onTextChanged(txtDiscountRate, this::onDiscountChanged);
+        cmbDiscountType.addActionListener(e -> onDiscountChanged());
+        onTextChanged(txtPaidAmount, this::onPaidAmountChanged);
         
-        txtTaxAmount.addKeyListener(new KeyAdapter() {
+        // Pay and Print button
+        btnPayAndPrint.addActionListener(e -> processPaymentAndPrint());
+    }
+    
+    private static void onTextChanged(JTextField field, Runnable action) {
+        field.getDocument().addDocumentListener(new DocumentListener() {
             @Override
-            public void keyReleased(KeyEvent e) {
-                calculateTotals();
+            public void insertUpdate(DocumentEvent e) {
+                action.run();
             }
-        });
-        
-        txtDiscountRate.addKeyListener(new KeyAdapter() {
+            
             @Override
-            public void keyReleased(KeyEvent e) {
-                calculateTotals();
+            public void removeUpdate(DocumentEvent e) {
+                action.run();
             }
-        });
-        
-        txtPaidAmount.addKeyListener(new KeyAdapter() {
+            
             @Override
-            public void keyReleased(KeyEvent e) {
-                calculateTotals();
+            public void changedUpdate(DocumentEvent e) {
             }
         });
-        
-        // Pay and Print button
-        btnPayAndPrint.addActionListener(e -> processPaymentAndPrint());
     }
     
     private void loadInitialData() {
-        // Generate new invoice number
-        currentInvoiceNo = salesController.generateInvoiceNumber();
-        lblInvoiceNo.setText(currentInvoiceNo);
+        // The number itself is taken when the invoice is saved
+        showNextInvoiceNumber();
         
         // Set current date
         lblDate.setText(LocalDate.now().toString());
         
+        // Show invoices still waiting for the database
+        updateCommitStatus(null, null, null);
+        
         // Load customers
         loadCustomers();
         
@@ -633,23 +720,99 @@ public class SalesPanel extends JPanel {
     }
     
     private void loadCustomers() {
+        if (customerLoader != null) {
+            customerLoader.cancel();
+        }
         cmbCustomer.removeAllItems();
         cmbCustomer.addItem("Select a Customer");
+        customerNamesVersion = customerRepository.getVersion();
+        
+        // Names are added chunk by chunk while the rest is still being read
+        DefaultComboBoxModel<String> customerNames = (DefaultComboBoxModel<String>) cmbCustomer.getModel();
+        customerLoader = new CustomerStreamLoader(customerRepository, chunk -> {
+            List<String> names = new ArrayList<>(chunk.size());
+            for (Customer customer : chunk) {
+                names.add(customer.getName());
+            }
+            customerNames.addAll(names);
+        });
+        customerLoader.execute();
+    }
+    
+    /**
+     * Apply one customer change to the combo instead of reloading every name
+     */
+    private void onCustomerChanged(CustomerChange change) {
+        boolean loading = customerLoader != null && !customerLoader.isDone();
+        boolean previousKnown = change.getType() == ChangeType.ADDED || change.getPrevious() != null;
+        if (loading || !previousKnown) {
+            loadCustomers();
+            return;
+        }
         
-        List<Customer> customers = customerService.getAllCustomers();
-        for (Customer customer : customers) {
-            cmbCustomer.addItem(customer.getName());
+        DefaultComboBoxModel<String> customerNames = (DefaultComboBoxModel<String>) cmbCustomer.getModel();
+        switch (change.getType()) {
+            case ADDED:
+                customerNames.addElement(change.getCustomer().getName());
+                break;
+            case REMOVED:
+                customerNames.removeElement(change.getPrevious().getName());
+                break;
+            case UPDATED:
+                int index = customerNames.getIndexOf(change.getPrevious().getName());
+                if (index > 0) {
+                    boolean selected = index == cmbCustomer.getSelectedIndex();
+                    customerNames.removeElementAt(index);
+                    customerNames.insertElementAt(change.getCustomer().getName(), index);
+                    if (selected) {
+                        cmbCustomer.setSelectedIndex(index);
+                    }
+                }
+                break;
         }
+        customerNamesVersion = change.getVersion();
+    }
+    
+    /**
+     * Customers added together (an import chunk) go into the combo at once;
+     * anything else is applied change by change
+     */
+    private void onCustomersChanged(List<CustomerChange> changes) {
+        if (customerLoader != null && !customerLoader.isDone()) {
+            loadCustomers();
+            return;
+        }
+        List<String> names = new ArrayList<>(changes.size());
+        for (CustomerChange change : changes) {
+            if (change.getType() != ChangeType.ADDED) {
+                names = null;
+                break;
+            }
+            names.add(change.getCustomer().getName());
+        }
+        if (names == null) {
+            for (CustomerChange change : changes) {
+                onCustomerChanged(change);
+            }
+            return;
+        }
+        ((DefaultComboBoxModel<String>) cmbCustomer.getModel()).addAll(names);
+        customerNamesVersion = changes.get(changes.size() - 1).getVersion();
     }
     
     private void loadProducts() {
-        cmbProduct.removeAllItems();
-        cmbProduct.addItem("Select a Product");
+        // Products are looked up while typing; only make sure the catalog is there
+        productCatalog.ensureLoaded();
+        clearProductSelection();
         
-        List<Product> products = productService.getAllProducts();
-        for (Product product : products) {
-            cmbProduct.addItem(product.getName());
-        }
+        // Build the search index before the first keystroke
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                productSearchIndex.prepare();
+                return null;
+            }
+        }.execute();
     }
     
     private void startTimeUpdater() {
@@ -664,22 +827,99 @@ public class SalesPanel extends JPanel {
     private void onCustomerSelected() {
         String selectedName = (String) cmbCustomer.getSelectedItem();
         if (selectedName != null && !selectedName.equals("Select a Customer")) {
-            selectedCustomer = customerService.getCustomerByName(selectedName);
+            selectedCustomer = findCustomerByName(selectedName);
             if (selectedCustomer != null) {
                 cmbCity.removeAllItems();
                 cmbCity.addItem(selectedCustomer.getCity());
                 
-                // Load arrears balance
-                arrearsBalance = salesController.getCustomerArrears(selectedCustomer.getId());
-                lblArrears.setText(arrearsBalance.toString());
+                loadArrears(selectedCustomer);
+            }
+        }
+    }
+    
+    /**
+     * Show the known balance at once, then the one checked against the
+     * database, which includes sales and payments on other terminals
+     */
+    private void loadArrears(Customer customer) {
+        Long known = arrearsLedger.findArrears(customer.getId());
+        arrearsBalance = known != null ? Money.toDecimal(known) : null;
+        lblArrears.setText(arrearsBalance != null ? arrearsBalance.toString() : "...");
+        
+        new SwingWorker<Long, Void>() {
+            @Override
+            protected Long doInBackground() {
+                return arrearsLedger.getCheckedArrears(customer.getId());
+            }
+            
+            @Override
+            protected void done() {
+                if (selectedCustomer != customer) {
+                    return; // another customer was picked meanwhile
+                }
+                try {
+                    arrearsBalance = Money.toDecimal(get());
+                    lblArrears.setText(arrearsBalance.toString());
+                } catch (InterruptedException | ExecutionException ex) {
+                    ex.printStackTrace();
+                    if (arrearsBalance == null) {
+                        lblArrears.setText("?");
+                    }
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Customer behind a name in the combo; asks which one is meant if the name is shared
+     */
+    private Customer findCustomerByName(String name) {
+        if (!customerNameIndex.isReady()) {
+            return customerService.getCustomerByName(name);
+        }
+        List<String> ids = customerNameIndex.findIds(name);
+        if (ids.isEmpty()) {
+            return null;
+        }
+        if (ids.size() == 1) {
+            return customerService.getCustomerById(ids.get(0));
+        }
+        
+        List<Customer> matches = new ArrayList<>();
+        for (String id : ids) {
+            Customer customer = customerService.getCustomerById(id);
+            if (customer != null) {
+                matches.add(customer);
+            }
+        }
+        String[] choices = new String[matches.size()];
+        for (int i = 0; i < choices.length; i++) {
+            Customer customer = matches.get(i);
+            choices[i] = customer.getId() + " - " + customer.getName() + " (" + customer.getCity() + ")";
+        }
+        if (choices.length == 0) {
+            return null;
+        }
+        Object choice = JOptionPane.showInputDialog(this,
+            "More than one customer is named \"" + name + "\". Select the customer:",
+            "Select Customer",
+            JOptionPane.QUESTION_MESSAGE,
+            null,
+            choices,
+            choices[0]);
+        for (int i = 0; i < choices.length; i++) {
+            if (choices[i].equals(choice)) {
+                return matches.get(i);
             }
         }
+        return null;
     }
     
     private void onProductIdEntered() {
         String productId = txtProductId.getText().trim();
         if (!productId.isEmpty()) {
-            Product product = productService.getProductById(productId);
+            // Accepts either the product ID or a scanned barcode
+            Product product = productCatalog.findByCode(productId);
             if (product != null) {
                 selectProductInComboBox(product.getName());
                 loadProductDetails(product);
@@ -691,25 +931,92 @@ public class SalesPanel extends JPanel {
     }
     
     private void onProductSelected() {
-        String selectedName = (String) cmbProduct.getSelectedItem();
-        if (selectedName != null && !selectedName.equals("Select a Product")) {
-            Product product = productService.getProductByName(selectedName);
-            if (product != null) {
-                loadProductDetails(product);
+        if (updatingProductSuggestions) {
+            return;
+        }
+        Object selected = cmbProduct.getSelectedItem();
+        if (selected == null || selected.toString().trim().isEmpty()) {
+            return;
+        }
+        
+        // A suggestion was picked, or Enter was pressed on typed text
+        String text = selected.toString();
+        Product product = productCatalog.findByName(text);
+        if (product == null) {
+            List<Product> matches = productSearchIndex.search(text, 1);
+            product = matches.isEmpty() ? null : matches.get(0);
+        }
+        if (product != null) {
+            selectProductInComboBox(product.getName());
+            loadProductDetails(product);
+        }
+    }
+    
+    private void onProductTextChanged() {
+        if (updatingProductSuggestions) {
+            return;
+        }
+        // Typing over a picked product deselects it, so Add cannot use it by mistake
+        String text = ((JTextField) cmbProduct.getEditor().getEditorComponent()).getText();
+        if (selectedProduct != null && !text.equals(selectedProduct.getName())) {
+            selectedProduct = null;
+            txtProductId.setText("");
+        }
+        productSearchTimer.restart();
+    }
+    
+    private void updateProductSuggestions() {
+        String text = ((JTextField) cmbProduct.getEditor().getEditorComponent()).getText();
+        if (selectedProduct != null && text.equals(selectedProduct.getName())) {
+            return;
+        }
+        
+        List<Product> matches = productSearchIndex.search(text, PRODUCT_SUGGESTIONS);
+        updatingProductSuggestions = true;
+        try {
+            productSuggestions.removeAllElements();
+            for (Product product : matches) {
+                productSuggestions.addElement(product.getName());
             }
+            // Keep what the user typed in the editor
+            cmbProduct.getEditor().setItem(text);
+        } finally {
+            updatingProductSuggestions = false;
+        }
+        
+        if (!matches.isEmpty() && cmbProduct.isShowing()) {
+            cmbProduct.showPopup();
+        } else {
+            cmbProduct.hidePopup();
         }
     }
     
     private void selectProductInComboBox(String productName) {
-        for (int i = 0; i < cmbProduct.getItemCount(); i++) {
-            if (cmbProduct.getItemAt(i).equals(productName)) {
-                cmbProduct.setSelectedIndex(i);
-                break;
-            }
+        updatingProductSuggestions = true;
+        try {
+            productSuggestions.removeAllElements();
+            productSuggestions.addElement(productName);
+            cmbProduct.setSelectedItem(productName);
+        } finally {
+            updatingProductSuggestions = false;
+        }
+        cmbProduct.hidePopup();
+    }
+    
+    private void clearProductSelection() {
+        selectedProduct = null;
+        productSearchTimer.stop();
+        updatingProductSuggestions = true;
+        try {
+            productSuggestions.removeAllElements();
+            cmbProduct.getEditor().setItem("");
+        } finally {
+            updatingProductSuggestions = false;
         }
     }
     
     private void loadProductDetails(Product product) {
+        selectedProduct = product;
         txtProductId.setText(product.getId());
         
         // Load capacities
@@ -723,7 +1030,7 @@ public class SalesPanel extends JPanel {
     private void addInvoiceItem() {
         try {
             // Validate inputs
-            if (cmbProduct.getSelectedIndex() <= 0) {
+            if (selectedProduct == null) {
                 JOptionPane.showMessageDialog(this, 
                     "Please select a product!", "Validation Error", 
                     JOptionPane.WARNING_MESSAGE);
@@ -738,46 +1045,30 @@ public class SalesPanel extends JPanel {
                 return;
             }
             
-            // Get selected product
-            String productName = (String) cmbProduct.getSelectedItem();
-            Product product = productService.getProductByName(productName);
+            // Get selected product, with the cached stock and price
+            Product product = productCatalog.findById(selectedProduct.getId());
+            if (product == null) {
+                product = selectedProduct;
+            }
             
             int quantity = Integer.parseInt(quantityStr);
             
-            // Check stock availability
-            if (product.getStockQuantity() < quantity) {
+            // Reserve stock so other tills cannot sell the same units
+            boolean reserved;
+            try {
+                reserved = stockReservations.reserve(product.getId(), quantity);
+            } catch (java.io.IOException ex) {
+                ex.printStackTrace();
                 JOptionPane.showMessageDialog(this, 
-                    "Insufficient stock! Available: " + product.getStockQuantity(), 
+                    "Could not reserve stock: " + ex.getMessage(), 
                     "Stock Error", JOptionPane.ERROR_MESSAGE);
                 return;
             }
-            
-            // Create invoice item
-            InvoiceItem item = new InvoiceItem();
-            item.setProduct(product);
-            item.setQuantity(quantity);
-            item.setUnitPrice(product.getSellingPrice());
-            item.setTotalPrice(product.getSellingPrice().multiply(new BigDecimal(quantity)));
-            
-            invoiceItems.add(item);
-            
-            // Add to table
-            Object[] rowData = {
-                invoiceItems.size(),
-                product.getName(),
-                product.getBarcode(),
-                quantity,
-                product.getUnit(),
-                product.getSellingPrice(),
-                item.getTotalPrice()
-            };
-            tableModel.addRow(rowData);
-            
-            // Clear inputs
-            clearProductInputs();
-            
-            // Recalculate totals
-            calculateTotals();
+            if (!reserved) {
+                reserveAfterRefresh(product, quantity);
+                return;
+            }
+            addLine(product, quantity);
             
         } catch (NumberFormatException ex) {
             JOptionPane.showMessageDialog(this, 
@@ -786,12 +1077,82 @@ public class SalesPanel extends JPanel {
         }
     }
     
+    /**
+     * The cached stock was too low; the product may have been restocked, so
+     * re-read it and try once more, off the event dispatch thread
+     */
+    private void reserveAfterRefresh(Product product, int quantity) {
+        btnAdd.setEnabled(false);
+        new SwingWorker<Boolean, Void>() {
+            @Override
+            protected Boolean doInBackground() throws Exception {
+                return stockReservations.reserveAfterRefresh(product.getId(), quantity);
+            }
+            
+            @Override
+            protected void done() {
+                btnAdd.setEnabled(true);
+                try {
+                    if (get()) {
+                        Product refreshed = productCatalog.findById(product.getId());
+                        addLine(refreshed != null ? refreshed : product, quantity);
+                    } else {
+                        JOptionPane.showMessageDialog(SalesPanel.this, 
+                            "Insufficient stock! Available: " + stockReservations.getAvailable(product.getId()), 
+                            "Stock Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                } catch (InterruptedException | ExecutionException ex) {
+                    ex.printStackTrace();
+                    JOptionPane.showMessageDialog(SalesPanel.this, 
+                        "Could not reserve stock: " + ex.getMessage(), 
+                        "Stock Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+    
+    /**
+     * Add a line whose stock is already reserved
+     */
+    private void addLine(Product product, int quantity) {
+        // Create invoice item
+        InvoiceItem item = new InvoiceItem();
+        item.setProduct(product);
+        item.setQuantity(quantity);
+        long lineTotal = Money.times(Money.ofDecimal(product.getSellingPrice()), quantity);
+        item.setUnitPrice(product.getSellingPrice());
+        item.setTotalPrice(Money.toDecimal(lineTotal));
+        
+        invoiceItems.add(item);
+        invoiceTotals.addLine(lineTotal);
+        
+        // Add to table
+        Object[] rowData = {
+            invoiceItems.size(),
+            product.getName(),
+            product.getBarcode(),
+            quantity,
+            product.getUnit(),
+            product.getSellingPrice(),
+            item.getTotalPrice()
+        };
+        tableModel.addRow(rowData);
+        
+        // Clear inputs
+        clearProductInputs();
+        
+        // Show new totals
+        updateTotalLabels();
+    }
+    
     private void removeSelectedItem() {
         int selectedRow = tblInvoiceItems.getSelectedRow();
         if (selectedRow >= 0) {
-            invoiceItems.remove(selectedRow);
+            InvoiceItem removed = invoiceItems.remove(selectedRow);
+            stockReservations.release(removed.getProduct().getId(), removed.getQuantity());
+            invoiceTotals.removeLine(Money.ofDecimal(removed.getTotalPrice()));
             tableModel.removeRow(selectedRow);
-            calculateTotals();
+            updateTotalLabels();
         } else {
             JOptionPane.showMessageDialog(this, 
                 "Please select an item to remove!", "Selection Error", 
@@ -805,68 +1166,48 @@ public class SalesPanel extends JPanel {
             "Confirm", JOptionPane.YES_NO_OPTION);
         
         if (confirm == JOptionPane.YES_OPTION) {
+            stockReservations.releaseAll(invoiceItems);
             invoiceItems.clear();
+            invoiceTotals.clearLines();
             tableModel.setRowCount(0);
-            calculateTotals();
+            updateTotalLabels();
         }
     }
     
-    private void calculateTotals() {
-        BigDecimal subTotal = BigDecimal.ZERO;
-        
-        // Calculate sub total
-        for (InvoiceItem item : invoiceItems) {
-            subTotal = subTotal.add(item.getTotalPrice());
-        }
-        
-        // Get shipping cost
-        BigDecimal shippingCost = getBigDecimalValue(txtShippingCost.getText(), BigDecimal.ZERO);
-        
-        // Calculate tax
-        BigDecimal taxAmount = getBigDecimalValue(txtTaxAmount.getText(), BigDecimal.ZERO);
-        BigDecimal taxValue;
-        if (cmbTaxType.getSelectedItem().equals("%")) {
-            taxValue = subTotal.multiply(taxAmount).divide(new BigDecimal(100), 2, RoundingMode.HALF_UP);
-        } else {
-            taxValue = taxAmount;
-        }
-        
-        // Calculate discount
-        BigDecimal discountRate = getBigDecimalValue(txtDiscountRate.getText(), BigDecimal.ZERO);
-        BigDecimal discountValue;
-        if (cmbDiscountType.getSelectedItem().equals("%")) {
-            discountValue = subTotal.multiply(discountRate).divide(new BigDecimal(100), 2, RoundingMode.HALF_UP);
-        } else {
-            discountValue = discountRate;
-        }
-        
-        // Calculate grand total
-        BigDecimal grandTotal = subTotal.add(shippingCost).add(taxValue).subtract(discountValue);
-        
-        // Calculate due amount
-        BigDecimal paidAmount = getBigDecimalValue(txtPaidAmount.getText(), BigDecimal.ZERO);
-        BigDecimal dueAmount = grandTotal.subtract(paidAmount);
-        
-        // Update labels
-        updateTotalLabel(lblSubTotal, subTotal);
-        updateTotalLabel(lblShippingCost, shippingCost);
-        updateTotalLabel(lblTaxAmount, taxValue);
-        updateTotalLabel(lblDiscountAmount, discountValue);
-        updateTotalLabel(lblGrandTotal, grandTotal);
-        updateTotalLabel(lblTotalDue, dueAmount);
+    private void onShippingCostChanged() {
+        invoiceTotals.setShippingCost(Money.parse(txtShippingCost.getText(), 0));
+        updateTotalLabels();
     }
     
-    private BigDecimal getBigDecimalValue(String text, BigDecimal defaultValue) {
-        try {
-            return new BigDecimal(text.trim());
-        } catch (NumberFormatException e) {
-            return defaultValue;
-        }
+    private void onTaxChanged() {
+        invoiceTotals.setTax(Money.parse(txtTaxAmount.getText(), 0),
+                             "%".equals(cmbTaxType.getSelectedItem()));
+        updateTotalLabels();
+    }
+    
+    private void onDiscountChanged() {
+        invoiceTotals.setDiscount(Money.parse(txtDiscountRate.getText(), 0),
+                                  "%".equals(cmbDiscountType.getSelectedItem()));
+        updateTotalLabels();
     }
     
-    private void updateTotalLabel(JLabel label, BigDecimal value) {
+    private void onPaidAmountChanged() {
+        invoiceTotals.setPaidAmount(Money.parse(txtPaidAmount.getText(), 0));
+        updateTotalLabels();
+    }
+    
+    private void updateTotalLabels() {
+        updateTotalLabel(lblSubTotal, invoiceTotals.getSubTotal());
+        updateTotalLabel(lblShippingCost, invoiceTotals.getShippingCost());
+        updateTotalLabel(lblTaxAmount, invoiceTotals.getTaxAmount());
+        updateTotalLabel(lblDiscountAmount, invoiceTotals.getDiscountAmount());
+        updateTotalLabel(lblGrandTotal, invoiceTotals.getGrandTotal());
+        updateTotalLabel(lblTotalDue, invoiceTotals.getDueAmount());
+    }
+    
+    private void updateTotalLabel(JLabel label, long value) {
         if (label != null) {
-            label.setText(value.setScale(2, RoundingMode.HALF_UP).toString());
+            label.setText(Money.format(value));
         }
     }
     
@@ -890,49 +1231,56 @@ public class SalesPanel extends JPanel {
             
             // Create invoice
             Invoice invoice = new Invoice();
-            invoice.setInvoiceNo(currentInvoiceNo);
             invoice.setCustomer(selectedCustomer);
             invoice.setInvoiceDate(LocalDate.now());
-            invoice.setItems(invoiceItems);
+            invoice.setItems(new ArrayList<>(invoiceItems));
             
             // Set amounts
-            BigDecimal grandTotal = new BigDecimal(lblGrandTotal.getText());
-            BigDecimal paidAmount = getBigDecimalValue(txtPaidAmount.getText(), BigDecimal.ZERO);
-            BigDecimal dueAmount = new BigDecimal(lblTotalDue.getText());
-            
-            invoice.setTotalAmount(grandTotal);
-            invoice.setPaidAmount(paidAmount);
-            invoice.setDueAmount(dueAmount);
-            invoice.setShippingCost(getBigDecimalValue(txtShippingCost.getText(), BigDecimal.ZERO));
-            invoice.setTaxAmount(new BigDecimal(lblTaxAmount.getText()));
-            invoice.setDiscountAmount(new BigDecimal(lblDiscountAmount.getText()));
+            invoice.setTotalAmount(Money.toDecimal(invoiceTotals.getGrandTotal()));
+            invoice.setPaidAmount(Money.toDecimal(invoiceTotals.getPaidAmount()));
+            invoice.setDueAmount(Money.toDecimal(invoiceTotals.getDueAmount()));
+            invoice.setShippingCost(Money.toDecimal(invoiceTotals.getShippingCost()));
+            invoice.setTaxAmount(Money.toDecimal(invoiceTotals.getTaxAmount()));
+            invoice.setDiscountAmount(Money.toDecimal(invoiceTotals.getDiscountAmount()));
             
             // Set payment details
             invoice.setPaymentType((String) cmbPaymentType.getSelectedItem());
             invoice.setPaymentReference(txtCheckNo.getText());
             invoice.setNotes(txtNotes.getText());
             
-            // Save invoice
-            boolean saved = salesController.saveInvoice(invoice);
-            
-            if (saved) {
-                JOptionPane.showMessageDialog(this, 
-                    "Invoice saved successfully!", "Success", 
-                    JOptionPane.INFORMATION_MESSAGE);
-                
-                // Show invoice settings dialog
-                InvoiceSettingsDialog settingsDialog = new InvoiceSettingsDialog(
-                    (JFrame) SwingUtilities.getWindowAncestor(this), invoice);
-                settingsDialog.setVisible(true);
-                
-                // Reset form
-                resetForm();
-            } else {
+            // Save invoice - journaled locally, written to the database in the background.
+            // The number is used up only now that a sale happens, and given back if it fails.
+            invoice.setInvoiceNo(invoiceNumberAllocator.nextInvoiceNumber());
+            boolean held = false;
+            try {
+                stockReservations.holdUntilCommitted(invoice);
+                held = true;
+                commitPipeline.submit(invoice);
+            } catch (java.io.IOException | RuntimeException ex) {
+                // Not journaled, e.g. disk full or an amount too large to record
+                if (held) {
+                    stockReservations.cancelHold(invoice);
+                }
+                invoiceNumberAllocator.giveBack(invoice.getInvoiceNo());
+                ex.printStackTrace();
                 JOptionPane.showMessageDialog(this, 
                     "Failed to save invoice!", "Error", 
                     JOptionPane.ERROR_MESSAGE);
+                return;
             }
             
+            JOptionPane.showMessageDialog(this, 
+                "Invoice " + invoice.getInvoiceNo() + " saved successfully!", "Success", 
+                JOptionPane.INFORMATION_MESSAGE);
+            
+            // Show invoice settings dialog
+            InvoiceSettingsDialog settingsDialog = new InvoiceSettingsDialog(
+                (JFrame) SwingUtilities.getWindowAncestor(this), invoice);
+            settingsDialog.setVisible(true);
+            
+            // Reset form
+            resetForm();
+            
         } catch (Exception ex) {
             ex.printStackTrace();
             JOptionPane.showMessageDialog(this, 
@@ -941,18 +1289,73 @@ public class SalesPanel extends JPanel {
         }
     }
     
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        commitPipeline.addCommitListener(commitListener);
+        customerRepository.addChangeListener(customerListener);
+        
+        // Customer list was cut short or customers changed while the panel was hidden
+        boolean cutShort = customerLoader != null && customerLoader.isCancelled();
+        if (cutShort || customerNamesVersion != customerRepository.getVersion()) {
+            loadCustomers();
+        }
+    }
+    
+    @Override
+    public void removeNotify() {
+        commitPipeline.removeCommitListener(commitListener);
+        customerRepository.removeChangeListener(customerListener);
+        if (customerLoader != null) {
+            customerLoader.cancel();
+        }
+        
+        // Lines of an invoice that was never paid must not stay reserved
+        stockReservations.releaseAll(invoiceItems);
+        invoiceItems.clear();
+        invoiceTotals.clearLines();
+        tableModel.setRowCount(0);
+        updateTotalLabels();
+        super.removeNotify();
+    }
+    
+    private void updateCommitStatus(String invoiceNo, CommitStatus status, String message) {
+        int pending = commitPipeline.getPendingCount();
+        
+        if (status == CommitStatus.FAILED) {
+            lblCommitStatus.setText(invoiceNo + " not saved, " + pending + " pending");
+            lblCommitStatus.setToolTipText(message);
+            lblCommitStatus.setForeground(new Color(220, 53, 69));
+        } else if (status == CommitStatus.RETRYING) {
+            lblCommitStatus.setText("Retrying " + invoiceNo + " (" + pending + " pending)");
+            lblCommitStatus.setToolTipText(message);
+            lblCommitStatus.setForeground(new Color(255, 152, 0));
+        } else if (pending > 0) {
+            lblCommitStatus.setText("Saving... (" + pending + " pending)");
+            lblCommitStatus.setToolTipText(null);
+            lblCommitStatus.setForeground(new Color(255, 152, 0));
+        } else {
+            lblCommitStatus.setText("All invoices saved");
+            lblCommitStatus.setToolTipText(null);
+            lblCommitStatus.setForeground(new Color(40, 167, 69));
+        }
+    }
+    
+    private void showNextInvoiceNumber() {
+        String next = invoiceNumberAllocator.peekNextInvoiceNumber();
+        lblInvoiceNo.setText(next != null ? next : "New");
+    }
+    
     private void clearProductInputs() {
         txtProductId.setText("");
-        cmbProduct.setSelectedIndex(0);
+        clearProductSelection();
         txtQuantity.setText("0");
         cmbCapacity.removeAllItems();
         lblSymbol.setText("");
     }
     
     private void resetForm() {
-        // Generate new invoice number
-        currentInvoiceNo = salesController.generateInvoiceNumber();
-        lblInvoiceNo.setText(currentInvoiceNo);
+        showNextInvoiceNumber();
         
         // Reset customer selection
         cmbCustomer.setSelectedIndex(0);
@@ -976,6 +1379,7 @@ public class SalesPanel extends JPanel {
         txtNotes.setText("");
         
         // Reset totals
-        calculateTotals();
+        invoiceTotals.reset();
+        updateTotalLabels();
     }
 }
\ No newline at end of file